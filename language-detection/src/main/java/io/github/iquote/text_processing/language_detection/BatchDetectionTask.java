@@ -0,0 +1,73 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/Join task detecting languages of a range of texts. Ranges are split in halves until they are small
+ * enough, so idle workers can steal the remaining halves from busy ones.
+ *
+ * @author Konstantin Gusarov
+ * @see DetectorFactory#detectAll(List, java.util.concurrent.Executor)
+ */
+class BatchDetectionTask extends RecursiveAction {
+    static final int BATCH_SIZE = 64;
+
+    private final DetectorFactory factory;
+    private final List<? extends CharSequence> texts;
+    private final String[] results;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param factory       Factory performing detection
+     * @param texts         Texts to detect languages for, should support fast random access
+     * @param results       Array receiving detected languages at the positions of their texts
+     * @param from          Index of the first text in range (inclusive)
+     * @param to            Index of the last text in range (exclusive)
+     */
+    BatchDetectionTask(final DetectorFactory factory, final List<? extends CharSequence> texts,
+                       final String[] results, final int from, final int to) {
+        this.factory = factory;
+        this.texts = texts;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= BATCH_SIZE) {
+            detectRange(factory, texts, results, from, to);
+        } else {
+            final int middle = (from + to) >>> 1;
+            invokeAll(
+                    new BatchDetectionTask(factory, texts, results, from, middle),
+                    new BatchDetectionTask(factory, texts, results, middle, to)
+            );
+        }
+    }
+
+    static void detectRange(final DetectorFactory factory, final List<? extends CharSequence> texts,
+                            final String[] results, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = factory.detectOrUnknown(texts.get(i));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * <p>Token for cooperative cancellation of time-budgeted detection, see
+ * {@link Detector#detect(long, CancellationToken, DetectionResult)}. Detection checks the token between
+ * sampling iterations and stops as soon as it is cancelled, returning the posterior computed so far.</p>
+ * <p>A single token may be shared by many detections, i.e. to shed the load of an overloaded node at once.
+ * Tokens can't be reset.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Cancel all detections using this token
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Check whether token was cancelled
+     *
+     * @return              {@code true} if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Gate rejecting texts which have too little linguistic content before they are scored, see
+ * {@link Detector#setContentGate(ContentGate)} and {@link DetectorFactory#setContentGate(ContentGate)}.
+ * Texts consisting mostly of digits, punctuation, emoji, URLs or a single short token are detected as
+ * {@code "unknown"} right away instead of being sampled into a random answer.</p>
+ * <p>Letters are counted after normalization, so digits, punctuation and symbols are never letters.
+ * Letters are counted as code points, so a supplementary letter encoded as a surrogate pair counts once.
+ * Texts without any valid features are not checked by the gate and are reported as such.</p>
+ * <p>Gate counts checked and rejected texts, so a single gate instance may be shared by several factories
+ * to report the gate hit rate of the whole application.</p>
+ * <pre>
+ * factory.setContentGate(new ContentGate(3, 3));
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class ContentGate {
+    private final int minLetters;
+    private final int minDistinctNGrams;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Create content gate
+     *
+     * @param minLetters            Minimal amount of letters the text has to contain
+     * @param minDistinctNGrams     Minimal amount of distinct known n-grams the text has to contain
+     */
+    public ContentGate(final int minLetters, final int minDistinctNGrams) {
+        if ((minLetters < 0) || (minDistinctNGrams < 0)) {
+            throw new IllegalArgumentException("Invalid content gate: letters " + minLetters
+                    + ", distinct n-grams " + minDistinctNGrams);
+        }
+
+        this.minLetters = minLetters;
+        this.minDistinctNGrams = minDistinctNGrams;
+    }
+
+    /**
+     * Get minimal amount of letters
+     *
+     * @return              Minimal amount of letters
+     */
+    public int getMinLetters() {
+        return minLetters;
+    }
+
+    /**
+     * Get minimal amount of distinct known n-grams
+     *
+     * @return              Minimal amount of distinct n-grams
+     */
+    public int getMinDistinctNGrams() {
+        return minDistinctNGrams;
+    }
+
+    /**
+     * Get amount of texts checked by the gate
+     *
+     * @return              Check count
+     */
+    public long getCheckCount() {
+        return checks.sum();
+    }
+
+    /**
+     * Get amount of texts rejected by the gate
+     *
+     * @return              Hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get share of checked texts rejected by the gate
+     *
+     * @return              Hit rate, {@code 0} if no texts were checked
+     */
+    public double getHitRate() {
+        final long checked = getCheckCount();
+        return (checked == 0) ? 0 : (double) getHitCount() / checked;
+    }
+
+    /**
+     * Record the outcome of a check
+     *
+     * @param rejected      {@code true} if the text was rejected
+     * @return              {@code rejected}
+     */
+    boolean record(final boolean rejected) {
+        checks.increment();
+        if (rejected) {
+            hits.increment();
+        }
+
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentGate{minLetters=" + minLetters + ", minDistinctNGrams=" + minDistinctNGrams
+                + ", checks=" + getCheckCount() + ", hits=" + getHitCount() + "}";
+    }
+}
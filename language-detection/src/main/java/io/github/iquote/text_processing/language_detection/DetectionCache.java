@@ -0,0 +1,259 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bounded cache of detection results used by {@link DetectorFactory} detection methods, see
+ * {@link DetectorFactory#setCache(DetectionCache)}. Results are keyed by a 64-bit hash of the sanitized text
+ * mixed with the identity of the factory, so a single cache can be shared by several factories.</p>
+ * <p>The cache is split into lock-striped segments, every segment evicts its least recently used results
+ * once it is full. Only languages whose probabilities are over the detection threshold are stored.</p>
+ * <pre>
+ * final DetectorFactory factory = ProfileRegistry.getFactory(true);
+ * factory.setCache(new DetectionCache(100_000));
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class DetectionCache {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final AtomicLong FACTORY_IDS = new AtomicLong();
+
+    private final Segment[] segments;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create cache with segment count based on available processors
+     *
+     * @param maxSize       Maximal amount of cached results
+     */
+    public DetectionCache(final int maxSize) {
+        this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create cache
+     *
+     * @param maxSize       Maximal amount of cached results
+     * @param concurrency   Expected amount of concurrently detecting threads, rounded up to a power of two
+     *                      and limited by {@code maxSize}
+     */
+    public DetectionCache(final int maxSize, final int concurrency) {
+        if (maxSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Cache size and concurrency must be positive");
+        }
+
+        final int segmentCount = Integer.highestOneBit(Math.min(maxSize, Math.max(1, 2 * concurrency - 1)));
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            final int segmentSize = maxSize / segmentCount + ((i < maxSize % segmentCount) ? 1 : 0);
+            segments[i] = new Segment(segmentSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get maximal amount of cached results
+     *
+     * @return          Maximal size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get current amount of cached results
+     *
+     * @return          Cache size
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Get amount of detections answered from the cache
+     *
+     * @return          Hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get amount of detections which had to be performed
+     *
+     * @return          Miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get amount of results evicted because cache was full
+     *
+     * @return          Eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Remove all cached results, counters are kept
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+
+    /**
+     * Get cached result
+     *
+     * @param key       Result key, see {@link #key(long, CharSequence)}
+     * @return          Cached result or {@code null} if result isn't cached
+     */
+    Result get(final long key) {
+        final Segment segment = segmentOf(key);
+        final Result result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache result
+     *
+     * @param key       Result key, see {@link #key(long, CharSequence)}
+     * @param result    Detection result
+     */
+    void put(final long key, final Result result) {
+        final Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+    }
+
+    private Segment segmentOf(final long key) {
+        return segments[(int) (key >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * Allocate identity of a factory using caches, factories allocate a new one whenever their detection
+     * settings change
+     *
+     * @return          Unique factory id
+     */
+    static long nextFactoryId() {
+        return FACTORY_IDS.incrementAndGet();
+    }
+
+    /**
+     * Compute result key: 64-bit FNV-1a hash of text characters mixed with factory identity
+     *
+     * @param factoryId Factory id, see {@link #nextFactoryId()}
+     * @param text      Sanitized text
+     * @return          Result key
+     */
+    static long key(final long factoryId, final CharSequence text) {
+        long hash = FNV_OFFSET_BASIS ^ (factoryId * 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+
+        // Final avalanche so both segment and map bits depend on every character
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Least recently used results of a single segment
+     */
+    private final class Segment extends LinkedHashMap<Long, Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Result> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Compact detection result: languages whose probabilities are over the detection threshold,
+     * ordered by probabilities descendently
+     */
+    static final class Result {
+        /**
+         * Result of a text without valid features
+         */
+        static final Result NO_FEATURES = new Result(new int[0], new double[0]);
+
+        final int[] languages;
+        final double[] probabilities;
+
+        Result(final int[] languages, final double[] probabilities) {
+            this.languages = languages;
+            this.probabilities = probabilities;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Outcome of language detection which is returned instead of throwing {@link LangDetectException} for texts
+ * that can't be detected, see {@link Detector#detectResult(DetectionResult)} and
+ * {@link DetectorFactory#detectResult(CharSequence, DetectionResult)}.</p>
+ * <p>Result holds up to {@link #capacity()} languages whose probabilities are over the detection threshold,
+ * ordered by probabilities descendently. Languages are identified by ids of the factory that detected them,
+ * see {@link DetectorFactory#getLanguageId(String)}. Instances are reusable, so a caller detecting many texts
+ * can keep a single result per thread and avoid allocating anything per text.</p>
+ * <pre>
+ * final DetectionResult result = new DetectionResult(3);
+ * factory.detectResult(text, result);
+ * for (int i = 0; i &lt; result.size(); i++) {
+ *     System.out.println(result.getLanguage(i) + ": " + result.getProbability(i));
+ * }
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class DetectionResult {
+    /**
+     * Detection status
+     */
+    public enum Status {
+        /**
+         * Language probability is over the detection threshold
+         */
+        DETECTED,
+
+        /**
+         * Text has valid features, but no language probability is over the detection threshold
+         */
+        UNKNOWN,
+
+        /**
+         * Text has no valid features, i.e. consists of digits, punctuation, URLs or e-mail addresses only
+         */
+        NO_FEATURES,
+    }
+
+    private final int[] languageIds;
+    private final double[] probabilities;
+    private List<String> languages = Collections.emptyList();
+    private Status status = Status.NO_FEATURES;
+    private boolean cutShort;
+    private int size;
+
+    /**
+     * Create result holding the top language only
+     */
+    public DetectionResult() {
+        this(1);
+    }
+
+    /**
+     * Create result holding up to the given amount of top languages
+     *
+     * @param capacity      Maximal amount of languages
+     */
+    public DetectionResult(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Result capacity must be positive");
+        }
+
+        languageIds = new int[capacity];
+        probabilities = new double[capacity];
+    }
+
+    /**
+     * Get detection status
+     *
+     * @return              Detection status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Check whether language was detected
+     *
+     * @return              {@code true} if status is {@link Status#DETECTED}
+     */
+    public boolean isDetected() {
+        return status == Status.DETECTED;
+    }
+
+    /**
+     * Check whether detection was cut short by deadline or cancellation, see
+     * {@link Detector#detect(long, CancellationToken, DetectionResult)}. In this case the result holds
+     * the posterior computed so far, which is less accurate than the complete one.
+     *
+     * @return              {@code true} if detection was stopped before it completed
+     */
+    public boolean isCutShort() {
+        return cutShort;
+    }
+
+    /**
+     * Get maximal amount of languages the result can hold
+     *
+     * @return              Result capacity
+     */
+    public int capacity() {
+        return languageIds.length;
+    }
+
+    /**
+     * Get amount of languages whose probabilities are over the detection threshold
+     *
+     * @return              Amount of languages, {@code 0} unless detected
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get id of the detected language
+     *
+     * @return              Id of the language which has most probability, {@code -1} unless detected
+     */
+    public int getLanguageId() {
+        return (size > 0) ? languageIds[0] : -1;
+    }
+
+    /**
+     * Get id of the language at the given rank
+     *
+     * @param rank          Rank of the language, {@code 0} for the one which has most probability
+     * @return              Language id
+     */
+    public int getLanguageId(final int rank) {
+        checkRank(rank);
+        return languageIds[rank];
+    }
+
+    /**
+     * Get detected language
+     *
+     * @return              Language code which has most probability, {@code "unknown"} unless detected
+     */
+    public String getLanguage() {
+        return (size > 0) ? languages.get(languageIds[0]) : Detector.UNKNOWN_LANG;
+    }
+
+    /**
+     * Get code of the language at the given rank
+     *
+     * @param rank          Rank of the language, {@code 0} for the one which has most probability
+     * @return              Language code
+     */
+    public String getLanguage(final int rank) {
+        checkRank(rank);
+        return languages.get(languageIds[rank]);
+    }
+
+    /**
+     * Get probability of the detected language
+     *
+     * @return              Probability, {@code 0} unless detected
+     */
+    public double getProbability() {
+        return (size > 0) ? probabilities[0] : 0;
+    }
+
+    /**
+     * Get probability of the language at the given rank
+     *
+     * @param rank          Rank of the language, {@code 0} for the one which has most probability
+     * @return              Probability
+     */
+    public double getProbability(final int rank) {
+        checkRank(rank);
+        return probabilities[rank];
+    }
+
+    /**
+     * Discard held languages
+     *
+     * @param languages     Language codes of the detecting factory, indexed by language ids
+     * @param status        New status, {@link Status#UNKNOWN} until a language is offered
+     */
+    void clear(final List<String> languages, final Status status) {
+        this.languages = languages;
+        this.status = status;
+        cutShort = false;
+        size = 0;
+    }
+
+    /**
+     * Mark detection as stopped before it completed
+     */
+    void markCutShort() {
+        cutShort = true;
+    }
+
+    /**
+     * Offer language whose probability is over the detection threshold, the language is kept
+     * if it is among top {@link #capacity()} ones offered so far
+     *
+     * @param languageId    Language id
+     * @param probability   Language probability
+     */
+    void offer(final int languageId, final double probability) {
+        status = Status.DETECTED;
+        if ((size == languageIds.length) && (probabilities[size - 1] >= probability)) {
+            return;
+        }
+
+        int i = (size < languageIds.length) ? size++ : (size - 1);
+        while ((i > 0) && (probabilities[i - 1] < probability)) {
+            languageIds[i] = languageIds[i - 1];
+            probabilities[i] = probabilities[i - 1];
+            i--;
+        }
+
+        languageIds[i] = languageId;
+        probabilities[i] = probability;
+    }
+
+    private void checkRank(final int rank) {
+        if ((rank < 0) || (rank >= size)) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of result size " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("DetectionResult{status=").append(status);
+        if (cutShort) {
+            sb.append(", cutShort");
+        }
+
+        sb.append(", languages=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(languages.get(languageIds[i])).append(':').append(probabilities[i]);
+        }
+
+        return sb.append("]}").toString();
+    }
+}
@@ -2,14 +2,24 @@ package io.github.iquote.text_processing.language_detection;
 
 import com.google.common.collect.Lists;
 
+import io.github.iquote.text_processing.language_detection.util.CharacterTable;
 import io.github.iquote.text_processing.language_detection.util.NGram;
+import io.github.iquote.text_processing.language_detection.util.NGramDictionary;
+import io.github.iquote.text_processing.language_detection.util.TextSanitizer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.Character.UnicodeBlock;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.regex.Pattern;
 
 import static org.apache.commons.lang3.StringEscapeUtils.escapeJava;
 
@@ -64,30 +74,77 @@ public class Detector {
     private static final double DEFAULT_ALHPA = 0.5;
     private static final double ALPHA_WIDTH = 0.05;
 
-    private static final int TRIAL_COUNT = 7;
-    private static final int ITERATION_LIMIT = 1000;
     private static final double PROB_THRESHOLD = 0.1;
     private static final double CONV_THRESHOLD = 0.99999;
     private static final int BASE_FREQ = 10000;
-    private static final String UNKNOWN_LANG = "unknown";
 
-    private static final Pattern URL_REGEX = Pattern.compile("https?://[-_.?&~;+=/#0-9A-Za-z]{1,2076}");
-    private static final Pattern MAIL_REGEX = Pattern.compile("[-_.0-9A-Za-z]{1,64}@[-_0-9A-Za-z]{1,255}[-_.0-9A-Za-z]{1,255}");
+    /**
+     * Smoothing weight of n-gram probabilities under the default smoothing parameter
+     */
+    static final double DEFAULT_WEIGHT = DEFAULT_ALHPA / BASE_FREQ;
+    static final String UNKNOWN_LANG = "unknown";
+
     private static final int DEFAULT_MAX_TEXT_LENGTH = 10000;
     private static final int CHECK_TRESHOLDS_ITERATION = 5;
+    private static final int DEADLINE_CHECK_BLOCKS = 64;
+    private static final Duration MAX_BUDGET = Duration.ofNanos(Long.MAX_VALUE / 2);
     private static final double MINIMAL_PROBABILITY_TO_DISPLAY = 0.00001;
+    private static final int STREAM_CHUNK_SIZE = 4096;
 
-    private final Map<String, double[]> languageProbabilityMap;
-    private final List<String> languageList;
-    private final Random rand = new Random();
+    private static final int INITIAL_NGRAM_CAPACITY = 256;
 
-    private String text;
+    private DetectorFactory factory;
+    private NGramDictionary dictionary;
+    private ProbabilityMatrix probabilityMatrix;
+    private List<String> languageList;
+    private int languageCount;
+    private final Random rand = new Random();
+    private final NGram ngram = new NGram();
+    private final NGram nonLatinNGram = new NGram();
+
+    private final StringBuilder text = new StringBuilder();
+    private int textLength;
+    private CharsetDecoder utf8Decoder;
+    private CharBuffer decoded;
+    private double[] scores;
+    private double[] trialProbabilities;
+    private double[] logScores;
+    private final NGramSequence allNGrams = new NGramSequence();
+    private final NGramSequence nonLatinNGrams = new NGramSequence();
+    private NGramSequence features = allNGrams;
+    private int[] histogram = new int[INITIAL_NGRAM_CAPACITY];
+    private int latinCount;
+    private int nonLatinCount;
+    private int letterCount;
+    private int[] distinctRows;
+    private int[] sortedLanguages;
     private double[] languageProbabilities;
+    private boolean noFeatures;
 
     private double alpha = DEFAULT_ALHPA;
     private int maxTextLength = DEFAULT_MAX_TEXT_LENGTH;
     private double[] priorMap;
+    private double[] routedPrior;
+    private double[] candidatePrior;
+    private final int[] scriptCounts = new int[CharacterTable.SCRIPT_COUNT];
+    private final int[] latinScriptCounts = new int[CharacterTable.SCRIPT_COUNT];
+    private final int[] otherScriptCounts = new int[CharacterTable.SCRIPT_COUNT];
+    private boolean scriptRouting = true;
     private boolean verbose;
+    private ScoringEngine scoringEngine = ScoringEngine.SAMPLING;
+    private TrialPolicy trialPolicy;
+    private ContentGate contentGate;
+    private double[] trialSquares;
+    private int iterationLimit;
+    private double pruningFloor;
+    private int[] activeLanguages;
+    private int activeCount;
+    private ProbabilityKernel kernel = ProbabilityKernel.get();
+    private double streamingConfidence = CONV_THRESHOLD;
+    private boolean budgeted;
+    private long deadline;
+    private CancellationToken cancellationToken;
+    private boolean cutShort;
 
     /**
      * Detector instance can be constructed via {@link DetectorFactory#create()}.
@@ -95,8 +152,75 @@ public class Detector {
      * @param factory {@link DetectorFactory} instance (only DetectorFactory inside)
      */
     Detector(final DetectorFactory factory) {
-        languageProbabilityMap = factory.languageProbabilityMap;
+        bind(factory);
+        trialPolicy = factory.getTrialPolicy();
+        contentGate = factory.getContentGate();
+    }
+
+    /**
+     * Create detector which is not bound to any factory yet. Such detectors hold per-thread buffers of
+     * {@link DetectorFactory} detection methods, which bind them for a single detection only.
+     */
+    Detector() {
+        // Bound by the factory before use
+    }
+
+    /**
+     * Bind detector to profiles of the given factory. Buffers are reused if the factory has as many
+     * languages as the previous one.
+     *
+     * @param factory               Factory holding language profiles
+     */
+    void bind(final DetectorFactory factory) {
+        this.factory = factory;
+        dictionary = factory.dictionary;
+        probabilityMatrix = factory.matrix;
         languageList = factory.languages;
+        languageCount = factory.languageCount;
+
+        final int size = languageList.size();
+        if ((scores == null) || (scores.length != size)) {
+            scores = new double[size];
+            trialProbabilities = new double[size];
+            logScores = new double[size];
+            sortedLanguages = new int[size];
+            candidatePrior = new double[size];
+            activeLanguages = new int[size];
+        }
+    }
+
+    /**
+     * Drop all references to the factory the detector is bound to, so per-thread detectors don't keep
+     * factories and their profiles reachable after use
+     */
+    void release() {
+        reset();
+        factory = null;
+        dictionary = null;
+        probabilityMatrix = null;
+        languageList = null;
+        contentGate = null;
+    }
+
+    /**
+     * Check if detector is bound to a factory
+     *
+     * @return                      {@code true} if detector is bound
+     */
+    boolean isBound() {
+        return factory != null;
+    }
+
+    /**
+     * Enable or disable script routing. Texts dominated by a single script are scored against languages
+     * writing in that script only, texts in a script used by a single language (i.e. Greek or Thai)
+     * are detected without scoring. Routing is enabled by default.
+     *
+     * @param scriptRouting         {@code true} if detection should be routed by script
+     */
+    public void setScriptRouting(final boolean scriptRouting) {
+        this.scriptRouting = scriptRouting;
+        languageProbabilities = null;
     }
 
     /**
@@ -151,6 +275,86 @@ public class Detector {
         }
     }
 
+    /**
+     * Set algorithm used to compute language probabilities.
+     * The default value is {@link ScoringEngine#SAMPLING}.
+     *
+     * @param scoringEngine         Scoring algorithm
+     */
+    public void setScoringEngine(final ScoringEngine scoringEngine) {
+        this.scoringEngine = scoringEngine;
+        languageProbabilities = null;
+    }
+
+    /**
+     * Set policy controlling trials of the {@link ScoringEngine#SAMPLING} algorithm.
+     * The default value is the policy of the factory, {@link TrialPolicy#FIXED} unless set otherwise.
+     *
+     * @param trialPolicy           Trial policy
+     */
+    public void setTrialPolicy(final TrialPolicy trialPolicy) {
+        this.trialPolicy = Objects.requireNonNull(trialPolicy, "trialPolicy");
+        languageProbabilities = null;
+    }
+
+    /**
+     * Set gate rejecting texts with too little linguistic content before they are scored. Rejected texts
+     * are detected as {@code "unknown"}. The default value is the gate of the factory, none unless set otherwise.
+     *
+     * @param contentGate           Content gate, {@code null} disables the gate
+     */
+    public void setContentGate(final ContentGate contentGate) {
+        this.contentGate = contentGate;
+        languageProbabilities = null;
+    }
+
+    /**
+     * Set probability below which languages are dropped from a trial of the {@link ScoringEngine#SAMPLING}
+     * algorithm. Probabilities are checked whenever they are normalized, dropped languages get zero probability
+     * and are not updated by the rest of the trial, so long texts are scored against a few plausible languages
+     * only. Floor of {@code 1e-20} leaves languages over the detection threshold unchanged in practice.
+     * Pruning is disabled by default.
+     *
+     * @param pruningFloor          Pruning floor, {@code 0} disables pruning
+     */
+    public void setPruningFloor(final double pruningFloor) {
+        if (pruningFloor < 0 || pruningFloor >= 1) {
+            throw new LangDetectException(ErrorCode.INIT_PARAM, "Pruning floor must be in [0, 1) range.");
+        }
+
+        this.pruningFloor = pruningFloor;
+        languageProbabilities = null;
+    }
+
+    /**
+     * Set kernel used by probability loops, the fastest one available is used by default
+     *
+     * @param kernel                Probability kernel
+     */
+    void setKernel(final ProbabilityKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Seed random generator of the {@link ScoringEngine#SAMPLING} algorithm to make detection reproducible
+     *
+     * @param seed                  Random seed
+     */
+    void setSeed(final long seed) {
+        rand.setSeed(seed);
+    }
+
+    /**
+     * Set posterior probability the top language has to reach to stop reading the text
+     * in {@link #detect(Reader)} and {@link #detect(CharBuffer)}.
+     * The default value is 0.99999.
+     *
+     * @param streamingConfidence   Confidence threshold, values above 1 make detection read the whole text
+     */
+    public void setStreamingConfidence(final double streamingConfidence) {
+        this.streamingConfidence = streamingConfidence;
+    }
+
     /**
      * Specify max size of target text to use for language detection.
      * The default value is 10000(10KB).
@@ -164,73 +368,369 @@ public class Detector {
     /**
      * Append the target text for language detection.
      * If the total size of target text exceeds the limit size specified by {@link io.github.iquote.text_processing.language_detection.Detector#setMaxTextLength(int)},
-     * the rest is cut down.
+     * the rest is cut down. N-grams are extracted from the appended part only, so feeding the text
+     * in many small parts costs the same as appending it at once.
      *
      * @param text                  The target text to append
      */
-    public void append(final String text) {
-        String sanitized = URL_REGEX.matcher(text).replaceAll(" ");
-        sanitized = MAIL_REGEX.matcher(sanitized).replaceAll(" ");
-        sanitized = NGram.normalizeVietnamese(sanitized);
-
-        final StringBuilder sb = new StringBuilder((this.text == null)? "" : this.text);
+    public void append(final CharSequence text) {
+        appendSanitized(text, maxTextLength - textLength);
+        languageProbabilities = null;
+    }
 
-        char pre = 0;
-        for (int i = 0; i < sanitized.length() && i < maxTextLength; i++) {
-            final char c = sanitized.charAt(i);
-            if ((c != ' ') || (pre != ' ')) {
-                sb.append(c);
-            }
+    /**
+     * Append the UTF-8 encoded target text held by the given buffer between its position and limit,
+     * see {@link #append(CharSequence)}. Both heap and direct buffers are supported, the text is decoded
+     * into a buffer reused by this instance, so no strings are created. Malformed input is replaced by
+     * U+FFFD. Position of the buffer isn't changed.
+     *
+     * @param utf8                  Buffer holding the UTF-8 encoded target text
+     */
+    public void append(final ByteBuffer utf8) {
+        if (utf8Decoder == null) {
+            utf8Decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
 
-            pre = c;
+        // UTF-8 never decodes into more chars than there are bytes
+        if ((decoded == null) || (decoded.capacity() < utf8.remaining())) {
+            decoded = CharBuffer.allocate(utf8.remaining());
         }
 
-        this.text = sb.toString();
+        decoded.clear();
+        utf8Decoder.reset();
+        utf8Decoder.decode(utf8.duplicate(), decoded, true);
+        utf8Decoder.flush(decoded);
+        decoded.flip();
+
+        append(decoded);
+    }
+
+    private void appendSanitized(final CharSequence text, final int maxLength) {
+        final int start = this.text.length();
+        textLength += TextSanitizer.sanitize(text, this.text, maxLength);
+        extractNGrams(start);
+    }
+
+    /**
+     * Discard appended text and detection results so this instance can be reused for another text.
+     * Detection parameters such as smoothing, prior map or scoring engine are kept.
+     */
+    public void reset() {
+        text.setLength(0);
+        textLength = 0;
+        clearNGrams();
         languageProbabilities = null;
+        routedPrior = null;
+    }
+
+    private void clearNGrams() {
+        ngram.reset();
+        nonLatinNGram.reset();
+        allNGrams.clear();
+        nonLatinNGrams.clear();
+        latinCount = 0;
+        nonLatinCount = 0;
+        letterCount = 0;
+        Arrays.fill(latinScriptCounts, 0);
+        Arrays.fill(otherScriptCounts, 0);
     }
 
     /**
-     * Perform text cleanup
-     * (eliminate URL, e-mail address and Latin sentence if it is not written in Latin alphabet)
+     * Select n-grams to be scored
+     * (eliminate Latin sentence if the text is not written in Latin alphabet)
      */
-    private void cleanupText() {
-        int latinCount = 0;
-        int nonLatinCount = 0;
+    private void selectNGrams() {
+        final boolean eliminateLatin = (latinCount << 1) < nonLatinCount;
+        features = ((latinCount > 0) && eliminateLatin) ? nonLatinNGrams : allNGrams;
+
+        for (int i = 0; i < scriptCounts.length; i++) {
+            scriptCounts[i] = eliminateLatin ? otherScriptCounts[i] : (otherScriptCounts[i] + latinScriptCounts[i]);
+        }
+    }
 
-        for (int i = 0; i < text.length(); i++) {
-            final char c = text.charAt(i);
-            if (c <= 'z' && c >= 'A') {
-                latinCount++;
-            } else if ((c >= '\u0300') && !Objects.equals(UnicodeBlock.of(c), UnicodeBlock.LATIN_EXTENDED_ADDITIONAL)) {
-                nonLatinCount++;
+    /**
+     * Detect language of the target text and return the language name which has the highest probability.
+     *
+     * @return                      Detected language name which has most probability.
+     * @throws LangDetectException  Can't detect because of no valid features in text
+     */
+    public String detect() throws LangDetectException {
+        requireFeatures();
+
+        final int best = bestLanguage();
+        return (best < 0) ? UNKNOWN_LANG : languageList.get(best);
+    }
+
+    /**
+     * Detect language of the target text without throwing an exception if there are no valid features in text
+     *
+     * @return                      Detection result holding the top language, {@link DetectionResult.Status#NO_FEATURES}
+     *                              if there are no valid features in text
+     */
+    public DetectionResult detectResult() {
+        return detectResult(new DetectionResult());
+    }
+
+    /**
+     * Detect language of the target text into the given result without throwing an exception if there are
+     * no valid features in text. The result keeps up to {@link DetectionResult#capacity()} languages whose
+     * probabilities are over the detection threshold, nothing is allocated.
+     *
+     * @param result                Result to be filled, its previous content is discarded
+     * @return                      The given result
+     */
+    public DetectionResult detectResult(final DetectionResult result) {
+        if (!computeProbabilities()) {
+            result.clear(languageList, DetectionResult.Status.NO_FEATURES);
+            return result;
+        }
+
+        result.clear(languageList, DetectionResult.Status.UNKNOWN);
+        for (int i = 0; i < languageProbabilities.length; i++) {
+            if (languageProbabilities[i] > PROB_THRESHOLD) {
+                result.offer(i, languageProbabilities[i]);
             }
         }
 
-        if ((latinCount << 1) < nonLatinCount) {
-            final StringBuilder textWithoutLatin = new StringBuilder(text.length());
-            for (int i = 0; i < text.length(); i++) {
-                final char c = text.charAt(i);
+        return result;
+    }
 
-                if (c > 'z' || c < 'A') {
-                    textWithoutLatin.append(c);
-                }
+    /**
+     * Detect language of the target text spending at most the given time on scoring,
+     * see {@link #detect(long, CancellationToken, DetectionResult)}
+     *
+     * @param budget                Time allowed to be spent on scoring, negative budget is already exhausted
+     * @return                      Detection result holding the top language
+     */
+    public DetectionResult detect(final Duration budget) {
+        return detect(deadlineAfter(budget), null, new DetectionResult());
+    }
+
+    /**
+     * Detect language of the target text stopping at the given deadline,
+     * see {@link #detect(long, CancellationToken, DetectionResult)}
+     *
+     * @param deadlineNanos         Deadline in terms of {@link System#nanoTime()}
+     * @return                      Detection result holding the top language
+     */
+    public DetectionResult detect(final long deadlineNanos) {
+        return detect(deadlineNanos, null, new DetectionResult());
+    }
+
+    /**
+     * Detect language of the target text into the given result stopping at the given deadline or as soon as
+     * the token is cancelled. Deadline and token are checked every few sampling iterations, between trials
+     * and between n-gram blocks of the {@link ScoringEngine#EXHAUSTIVE} algorithm. If detection is stopped,
+     * the result holds the posterior computed so far and is {@link DetectionResult#isCutShort() cut short},
+     * probabilities are recomputed from scratch by the next detection.
+     * Detection doesn't throw an exception if there are no valid features in text.
+     *
+     * @param deadlineNanos         Deadline in terms of {@link System#nanoTime()}
+     * @param token                 Cancellation token, {@code null} if detection can't be cancelled
+     * @param result                Result to be filled, its previous content is discarded
+     * @return                      The given result
+     */
+    public DetectionResult detect(final long deadlineNanos, final CancellationToken token,
+                                  final DetectionResult result) {
+        budgeted = true;
+        deadline = deadlineNanos;
+        cancellationToken = token;
+
+        try {
+            detectResult(result);
+            if (cutShort) {
+                result.markCutShort();
+                languageProbabilities = null;
             }
+        } finally {
+            budgeted = false;
+            cancellationToken = null;
+            cutShort = false;
+        }
 
-            text = textWithoutLatin.toString();
+        return result;
+    }
+
+    /**
+     * Convert time budget to the deadline in terms of {@link System#nanoTime()}. Budget is saturated
+     * at half of the {@code long} nanosecond range, so that huge budgets like {@link ChronoUnit#FOREVER}
+     * neither overflow nor wrap around the deadline comparison, negative budget yields passed deadline
+     *
+     * @param budget                Time allowed to be spent on detection
+     * @return                      Deadline in terms of {@link System#nanoTime()}
+     */
+    static long deadlineAfter(final Duration budget) {
+        final long now = System.nanoTime();
+        if (budget.isNegative()) {
+            return now;
         }
+
+        return now + ((budget.compareTo(MAX_BUDGET) < 0) ? budget : MAX_BUDGET).toNanos();
     }
 
     /**
-     * Detect language of the target text and return the language name which has the highest probability.
+     * Check whether budgeted detection has to be stopped
      *
+     * @return                      {@code true} if deadline passed or detection was cancelled
+     */
+    private boolean expired() {
+        if (budgeted && !cutShort) {
+            cutShort = ((cancellationToken != null) && cancellationToken.isCancelled())
+                    || ((System.nanoTime() - deadline) >= 0);
+        }
+
+        return cutShort;
+    }
+
+    /**
+     * Find the language which has the highest probability over PROB_THRESHOLD
+     *
+     * @return                      Language index, {@code -1} if no probability is over PROB_THRESHOLD
+     */
+    private int bestLanguage() {
+        int best = -1;
+        double bestProbability = PROB_THRESHOLD;
+        for (int i = 0; i < languageProbabilities.length; i++) {
+            if (languageProbabilities[i] > bestProbability) {
+                best = i;
+                bestProbability = languageProbabilities[i];
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Compute language probabilities of the appended text unless they are computed already
+     *
+     * @return                      {@code false} if there are no valid features in text
+     */
+    private boolean computeProbabilities() {
+        if (languageProbabilities == null) {
+            noFeatures = !detectBlock();
+        }
+
+        return !noFeatures;
+    }
+
+    private void requireFeatures() {
+        if (!computeProbabilities()) {
+            throw noFeaturesException();
+        }
+    }
+
+    private static LangDetectException noFeaturesException() {
+        return LangDetectException.stackless(ErrorCode.CANNOT_DETECT, "no features in text");
+    }
+
+    /**
+     * Detect language of the text read from the given reader and return the language name which has the highest
+     * probability. Text is read and scored in chunks, reading stops as soon as the posterior probability of the top
+     * language reaches {@link #setStreamingConfidence(double) streaming confidence}, so large texts don't have
+     * to be read completely or kept in memory. Any text appended before is discarded.
+     * Latin sentences are eliminated from each chunk independently and {@link #setMaxTextLength(int)} doesn't
+     * apply. Scoring is performed by the {@link ScoringEngine#EXHAUSTIVE} algorithm regardless of the
+     * {@link #setScoringEngine(ScoringEngine) scoring engine} set.
+     *
+     * @param reader                Source of the target text, it is not closed by this method
+     * @return                      Detected language name which has most probability.
+     * @throws LangDetectException  Can't detect because of no valid features in text or reader failed
+     */
+    public String detect(final Reader reader) throws LangDetectException {
+        return detectStream(reader);
+    }
+
+    /**
+     * Detect language of the text held by the given buffer, see {@link #detect(Reader)}.
+     * Position of the buffer isn't changed.
+     *
+     * @param buffer                Buffer holding the target text between its position and limit
      * @return                      Detected language name which has most probability.
      * @throws LangDetectException  Can't detect because of no valid features in text
      */
-    public String detect() throws LangDetectException {
-        final List<Language> probabilities = getProbabilities();
-        final Optional<Language> result = probabilities.stream().findFirst();
+    public String detect(final CharBuffer buffer) throws LangDetectException {
+        return detectStream(buffer.duplicate());
+    }
+
+    private String detectStream(final Readable source) {
+        reset();
+        initLogPrior(logScores);
+
+        final CharBuffer chunk = CharBuffer.allocate(STREAM_CHUNK_SIZE);
+        boolean hasFeatures = false;
+        boolean eof = false;
+
+        try {
+            while (!eof) {
+                eof = readChunk(source, chunk);
+
+                chunk.flip();
+                final int end = eof ? chunk.limit() : lastSafeBoundary(chunk);
+
+                // Chunks don't count against maxTextLength, so they bypass appendSanitized
+                text.setLength(0);
+                clearNGrams();
+                TextSanitizer.sanitize(CharBuffer.wrap(chunk.array(), 0, end), text, Integer.MAX_VALUE);
+                extractNGrams(0);
+                selectNGrams();
+
+                chunk.position(end);
+                chunk.compact();
+
+                if (features.count > 0) {
+                    hasFeatures = true;
+                    accumulateLogScores(logScores);
+
+                    System.arraycopy(logScores, 0, scores, 0, scores.length);
+                    if (logToProbabilities(scores) >= streamingConfidence) {
+                        break;
+                    }
+                }
+            }
+
+            if (!hasFeatures) {
+                throw noFeaturesException();
+            }
+
+            languageProbabilities = scores;
+            noFeatures = false;
+            return detect();
+        } finally {
+            // The last chunk must not leak into text appended afterwards
+            text.setLength(0);
+            textLength = 0;
+            clearNGrams();
+        }
+    }
+
+    private static boolean readChunk(final Readable source, final CharBuffer chunk) {
+        try {
+            while (chunk.hasRemaining()) {
+                if (source.read(chunk) < 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.CANNOT_READ_TEXT, "Failed to read target text", e);
+        }
+    }
+
+    /**
+     * Find the end of the last whitespace-terminated part of the chunk, so URLs, e-mails and
+     * words are never split between chunks
+     */
+    private static int lastSafeBoundary(final CharBuffer chunk) {
+        for (int i = chunk.limit() - 1; i >= 0; i--) {
+            if (Character.isWhitespace(chunk.get(i))) {
+                return i + 1;
+            }
+        }
 
-        return result.isPresent()? result.get().getCode() : UNKNOWN_LANG;
+        return chunk.limit();
     }
 
     /**
@@ -240,40 +740,397 @@ public class Detector {
      * @throws LangDetectException  Can't detect because of no valid features in text
      */
     public List<Language> getProbabilities() throws LangDetectException {
-        if (languageProbabilities == null) {
-            detectBlock();
+        requireFeatures();
+        return sortProbabilities(languageProbabilities);
+    }
+
+    /**
+     * Pass language candidates which have high probabilities to the given sink without creating
+     * intermediate {@link Language} instances
+     *
+     * @param sink                  Sink receiving languages whose probabilities are over PROB_THRESHOLD,
+     *                              ordered by probabilities descendently
+     * @throws LangDetectException  Can't detect because of no valid features in text
+     */
+    public void getProbabilities(final ResultSink sink) throws LangDetectException {
+        requireFeatures();
+
+        final int count = sortLanguages();
+        for (int i = 0; i < count; i++) {
+            final int language = sortedLanguages[i];
+            sink.accept(languageList.get(language), languageProbabilities[language]);
         }
+    }
 
-        return sortProbabilities(languageProbabilities);
+    /**
+     * Detect languages and copy the ones which have high probabilities into a compact cacheable result
+     *
+     * @return                      Languages whose probabilities are over PROB_THRESHOLD,
+     *                              {@link DetectionCache.Result#NO_FEATURES} if there are no valid features in text
+     */
+    DetectionCache.Result toCacheResult() {
+        if (!computeProbabilities()) {
+            return DetectionCache.Result.NO_FEATURES;
+        }
+
+        final int count = sortLanguages();
+        final int[] languages = Arrays.copyOf(sortedLanguages, count);
+        final double[] probabilities = new double[count];
+        for (int i = 0; i < count; i++) {
+            probabilities[i] = languageProbabilities[languages[i]];
+        }
+
+        return new DetectionCache.Result(languages, probabilities);
+    }
+
+    /**
+     * Compute cache key of the appended text
+     *
+     * @param factoryId             Identity of the factory, see {@link DetectionCache#nextFactoryId()}
+     * @return                      Cache key
+     */
+    long cacheKey(final long factoryId) {
+        return DetectionCache.key(factoryId, text);
+    }
+
+    /**
+     * Sort languages whose probabilities are over PROB_THRESHOLD by probabilities descendently,
+     * probabilities should be computed already
+     *
+     * @return                      Amount of languages in {@link #sortedLanguages}
+     */
+    private int sortLanguages() {
+        int count = 0;
+        for (int j = 0; j < languageProbabilities.length; j++) {
+            final double probability = languageProbabilities[j];
+            if (probability > PROB_THRESHOLD) {
+                int i = count++;
+                while ((i > 0) && (languageProbabilities[sortedLanguages[i - 1]] < probability)) {
+                    sortedLanguages[i] = sortedLanguages[i - 1];
+                    i--;
+                }
+
+                sortedLanguages[i] = j;
+            }
+        }
+
+        return count;
     }
     
-    private void detectBlock() throws LangDetectException {
-        cleanupText();
+    /**
+     * Compute language probabilities of the appended text
+     *
+     * @return                      {@code false} if there are no valid features in text
+     */
+    private boolean detectBlock() {
+        selectNGrams();
+
+        languageProbabilities = scores;
+        Arrays.fill(languageProbabilities, 0);
+
+        if (features.count == 0) {
+            return false;
+        }
+
+        if (gated()) {
+            if (verbose) {
+                LOGGER.debug("==> rejected by content gate: {} letters", letterCount);
+            }
+
+            return true;
+        }
+
+        final int[] candidates = scriptRouting ? factory.getScriptRouter().route(scriptCounts) : null;
+        routedPrior = (candidates != null) ? restrictPrior(candidates) : null;
+
+        if ((routedPrior != null) && (candidates.length == 1)) {
+            if (verbose) {
+                LOGGER.debug("==> routed by script to {}", languageList.get(candidates[0]));
+            }
+
+            languageProbabilities[candidates[0]] = 1;
+            return true;
+        }
+
+        if (scoringEngine == ScoringEngine.EXHAUSTIVE) {
+            scoreAllNGrams();
+        } else {
+            runTrials();
+        }
+
+        return true;
+    }
+
+    /**
+     * Run trials as allowed by the {@link #trialPolicy}: every trial adds its probabilities divided by the maximal
+     * amount of trials to the language probabilities, so they are rescaled only if trials stop early
+     */
+    private void runTrials() {
+        final TrialPolicy policy = trialPolicy;
+        final int maxTrials = policy.getMaxTrials();
+        final int nGramCount = features.count;
+        iterationLimit = policy.iterationLimit(policy.limitsIterations(nGramCount) ? countDistinctNGrams() : nGramCount);
+
+        if (!policy.isAdaptive()) {
+            for (int t = 1; t <= maxTrials; t++) {
+                performTrial(maxTrials);
+                if (cutShort) {
+                    rescaleTrials(t, maxTrials);
+                    return;
+                }
+            }
+
+            return;
+        }
+
+        if (trialSquares == null) {
+            trialSquares = new double[languageProbabilities.length];
+        }
+
+        Arrays.fill(trialSquares, 0);
+
+        int top = -1;
+        for (int t = 1; t <= maxTrials; t++) {
+            final double[] prob = performTrial(maxTrials);
+            for (int i = 0; i < prob.length; i++) {
+                trialSquares[i] += prob[i] * prob[i];
+            }
+
+            final int best = topLanguage(languageProbabilities);
+            if (cutShort || ((t >= policy.getMinTrials()) && (best == top) && (t < maxTrials)
+                    && (maxTrialVariance(t, maxTrials) <= policy.getMaxVariance()))) {
+                if (verbose) {
+                    LOGGER.debug("==> stopped after {} trials", t);
+                }
+
+                rescaleTrials(t, maxTrials);
+                return;
+            }
+
+            top = best;
+        }
+    }
+
+    /**
+     * Rescale language probabilities accumulated by trials which stopped early
+     *
+     * @param trials        Amount of completed trials
+     * @param maxTrials     Amount of trials probabilities were divided by
+     */
+    private void rescaleTrials(final int trials, final int maxTrials) {
+        for (int i = 0; i < languageProbabilities.length; i++) {
+            languageProbabilities[i] *= (double) maxTrials / trials;
+        }
+    }
+
+    /**
+     * Compute the maximal sample variance of language probabilities between completed trials
+     */
+    private double maxTrialVariance(final int trials, final int maxTrials) {
+        double max = 0;
+        for (int i = 0; i < languageProbabilities.length; i++) {
+            final double mean = languageProbabilities[i] * maxTrials / trials;
+            final double variance = (trialSquares[i] / trials - mean * mean) * trials / (trials - 1);
+
+            if (variance > max) {
+                max = variance;
+            }
+        }
+
+        return max;
+    }
 
-        final List<String> ngrams = extractNGrams();
-        if (ngrams.isEmpty()) {
-            throw new LangDetectException(ErrorCode.CANNOT_DETECT, "no features in text");
+    private static int topLanguage(final double[] prob) {
+        int best = 0;
+        for (int i = 1; i < prob.length; i++) {
+            if (prob[i] > prob[best]) {
+                best = i;
+            }
         }
 
-        languageProbabilities = new double[languageList.size()];
-        final int nGramCount = ngrams.size();
+        return best;
+    }
 
-        for (int t = 0; t < TRIAL_COUNT; t++) {
-            performTrial(ngrams, nGramCount);
+    /**
+     * Check the text against the {@link #contentGate}
+     *
+     * @return              {@code true} if the text is rejected
+     */
+    private boolean gated() {
+        final ContentGate gate = contentGate;
+        if (gate == null) {
+            return false;
         }
+
+        return gate.record((letterCount < gate.getMinLetters()) || !hasDistinctNGrams(gate.getMinDistinctNGrams()));
     }
 
-    private void performTrial(final List<String> ngrams, final int nGramCount) {
+    /**
+     * Check whether the text has at least the given amount of distinct n-grams. Unlike {@link #countDistinctNGrams()}
+     * n-grams are not sorted, scanning stops as soon as enough distinct n-grams are seen.
+     */
+    private boolean hasDistinctNGrams(final int min) {
+        if (features.count < min) {
+            return false;
+        }
+
+        if ((distinctRows == null) || (distinctRows.length < min)) {
+            distinctRows = new int[min];
+        }
+
+        int found = 0;
+        for (int i = 0; (i < features.count) && (found < min); i++) {
+            final int row = features.rows[i];
+
+            int j = 0;
+            while ((j < found) && (distinctRows[j] != row)) {
+                j++;
+            }
+
+            if (j == found) {
+                distinctRows[found++] = row;
+            }
+        }
+
+        return found >= min;
+    }
+
+    private int countDistinctNGrams() {
+        final int count = features.count;
+        if (histogram.length < count) {
+            histogram = new int[features.rows.length];
+        }
+
+        System.arraycopy(features.rows, 0, histogram, 0, count);
+        Arrays.sort(histogram, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if ((i == 0) || (histogram[i] != histogram[i - 1])) {
+                distinct++;
+            }
+        }
+
+        return distinct;
+    }
+
+    /**
+     * Compute exact posterior of every language: n-grams are sorted to form a histogram and
+     * {@code count * log(p)} of every distinct n-gram is added to the language log-likelihood
+     */
+    private void scoreAllNGrams() {
+        if (expired()) {
+            return;
+        }
+
+        final double[] scores = languageProbabilities;
+        initLogPrior(scores);
+        accumulateLogScores(scores);
+        logToProbabilities(scores);
+
+        if (verbose) {
+            final List<Language> sortedProbs = sortProbabilities(scores);
+            LOGGER.debug("==> {}", sortedProbs);
+        }
+    }
+
+    /**
+     * Add log-likelihood of all extracted n-grams to the given language scores
+     *
+     * @param scores        Language log scores to update
+     */
+    private void accumulateLogScores(final double[] scores) {
+        final ProbabilityMatrix.LogScorer scorer = probabilityMatrix.getLogScorer(alpha / BASE_FREQ);
+
+        final int count = features.count;
+        if (histogram.length < count) {
+            histogram = new int[features.rows.length];
+        }
+
+        System.arraycopy(features.rows, 0, histogram, 0, count);
+        Arrays.sort(histogram, 0, count);
+
+        int blocks = 0;
+        for (int start = 0; start < count; ) {
+            final int row = histogram[start];
+            int end = start + 1;
+            while ((end < count) && (histogram[end] == row)) {
+                end++;
+            }
+
+            scorer.accumulate(scores, row, end - start, kernel);
+
+            start = end;
+            if (((++blocks % DEADLINE_CHECK_BLOCKS) == 0) && expired()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Restrict prior probabilities to the given languages
+     *
+     * @param candidates    Language columns
+     * @return              Normalized prior probabilities, {@code null} if all candidates have zero prior
+     */
+    private double[] restrictPrior(final int[] candidates) {
+        final double[] prior = candidatePrior;
+        Arrays.fill(prior, 0);
+
+        double sum = 0;
+        for (final int language : candidates) {
+            prior[language] = (priorMap != null) ? priorMap[language] : 1;
+            sum += prior[language];
+        }
+
+        if (sum <= 0) {
+            return null;
+        }
+
+        for (final int language : candidates) {
+            prior[language] /= sum;
+        }
+
+        return prior;
+    }
+
+    private void initLogPrior(final double[] scores) {
+        final double[] prior = (routedPrior != null) ? routedPrior : priorMap;
+        if (prior != null) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = Math.log(prior[i]);
+            }
+        } else {
+            Arrays.fill(scores, 0);
+        }
+    }
+
+    private double logToProbabilities(final double[] scores) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (final double score : scores) {
+            if (score > max) {
+                max = score;
+            }
+        }
+
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Math.exp(scores[i] - max);
+        }
+
+        return normalizeProbabilities(scores);
+    }
+
+    private double[] performTrial(final int trialCount) {
         final double[] prob = initProbabilities();
         final double a = this.alpha + rand.nextGaussian() * ALPHA_WIDTH;
+        initActiveLanguages(prob);
 
         for (int i = 0; ; i++) {
-            final int r = rand.nextInt(nGramCount);
-            final String nGram = ngrams.get(r);
-            updateLanguageProbilities(prob, nGram, a);
+            final int r = rand.nextInt(features.count);
+            updateLanguageProbilities(prob, features.rows[r], a);
 
             if ((i % CHECK_TRESHOLDS_ITERATION) == 0) {
-                if ((normalizeProbabilities(prob) > CONV_THRESHOLD) || (i >= ITERATION_LIMIT)){
+                if ((normalizeTrialProbabilities(prob) > CONV_THRESHOLD) || (i >= iterationLimit) || expired()) {
                     break;
                 }
 
@@ -285,20 +1142,23 @@ public class Detector {
         }
 
         for (int i = 0; i < languageProbabilities.length; i++) {
-            languageProbabilities[i] += prob[i] / TRIAL_COUNT;
+            languageProbabilities[i] += prob[i] / trialCount;
         }
 
         if (verbose) {
             final List<Language> sortedProbs = sortProbabilities(prob);
             LOGGER.debug("==> {}", sortedProbs);
         }
+
+        return prob;
     }
 
     private double[] initProbabilities() {
-        final double[] prob = new double[languageList.size()];
+        final double[] prob = trialProbabilities;
+        final double[] prior = (routedPrior != null) ? routedPrior : priorMap;
 
-        if (priorMap != null) {
-            System.arraycopy(priorMap, 0, prob, 0, prob.length);
+        if (prior != null) {
+            System.arraycopy(prior, 0, prob, 0, prob.length);
         } else {
             for (int i = 0; i < prob.length; i++) {
                 prob[i] = 1.0 / languageList.size();
@@ -308,52 +1168,141 @@ public class Detector {
         return prob;
     }
 
-    private List<String> extractNGrams() {
-        final List<String> list = Lists.newArrayList();
-        final NGram ngram = new NGram();
-
+    /**
+     * Extract matrix rows of known n-grams found in the text appended since the given position.
+     * Since Latin sentence is eliminated only if the whole text is not written in Latin alphabet, n-grams
+     * of the text without Latin characters are extracted as well. Both sequences are the same until
+     * the first Latin character is met.
+     *
+     * @param start         Position of the first appended character
+     */
+    private void extractNGrams(final int start) {
         final int l = text.length();
-        for (int i = 0; i < l; i++) {
+        for (int i = start; i < l; i++) {
             final char ch = text.charAt(i);
-            ngram.addChar(ch);
+            final int script = CharacterTable.scriptId(ch);
+            if (CharacterTable.isLetter(ch)
+                    || (Character.isLowSurrogate(ch) && Character.isLetter(Character.codePointBefore(text, i + 1)))) {
+                letterCount++;
+            }
 
-            for (int n = 1; n <= NGram.MAX_NGRAM_LENGTH; n++) {
-                final String w = ngram.get(n);
+            if (CharacterTable.isLatin(ch)) {
+                if (latinCount++ == 0) {
+                    nonLatinNGrams.copyOf(allNGrams);
+                }
 
-                if ((w != null) && languageProbabilityMap.containsKey(w)) {
-                    list.add(w);
+                latinScriptCounts[script]++;
+            } else {
+                if (CharacterTable.isNonLatin(ch)) {
+                    nonLatinCount++;
+                }
+
+                otherScriptCounts[script]++;
+                nonLatinNGram.addChar(ch);
+
+                if (latinCount > 0) {
+                    addNGrams(nonLatinNGram, nonLatinNGrams);
                 }
             }
-        }
 
-        return list;
+            ngram.addChar(ch);
+            addNGrams(ngram, allNGrams);
+        }
     }
 
-    private boolean updateLanguageProbilities(final double[] prob, final String word, final double alpha) {
-        if ((word == null) || !languageProbabilityMap.containsKey(word)) {
-            return false;
+    private void addNGrams(final NGram window, final NGramSequence target) {
+        for (int n = 1; n <= NGram.MAX_NGRAM_LENGTH; n++) {
+            final int row = factory.rowOf(window.getKey(n));
+
+            if (row != NGramDictionary.NOT_FOUND) {
+                target.add(row);
+            }
         }
+    }
 
-        final double[] langProbMap = languageProbabilityMap.get(word);
+    private void updateLanguageProbilities(final double[] prob, final int row, final double alpha) {
         if (verbose) {
+            final String word = NGram.unpack(dictionary.keyAt(row));
             final String escaped = escapeJava(word);
-            final String probs = wordProbToString(langProbMap);
+            final String probs = wordProbToString(row);
 
             LOGGER.debug("{} ({}): {}", word, escaped, probs);
         }
 
-        final double weight = alpha / BASE_FREQ;
+        if (activeCount < prob.length) {
+            probabilityMatrix.update(prob, row, alpha / BASE_FREQ, kernel, activeLanguages, activeCount);
+        } else {
+            probabilityMatrix.update(prob, row, alpha / BASE_FREQ, kernel);
+        }
+    }
+
+    /**
+     * Fill active language list with all languages having non-zero initial probability
+     * if pruning is enabled, otherwise all languages are kept active
+     */
+    private void initActiveLanguages(final double[] prob) {
+        if (pruningFloor <= 0) {
+            activeCount = prob.length;
+            return;
+        }
+
+        activeCount = 0;
         for (int i = 0; i < prob.length; i++) {
-            prob[i] *= weight + langProbMap[i];
+            if (prob[i] > 0) {
+                activeLanguages[activeCount++] = i;
+            }
         }
+    }
 
-        return true;
+    /**
+     * Normalize probabilities of active languages and drop the ones below {@link #pruningFloor}
+     *
+     * @return              Maximal probability
+     */
+    private double normalizeTrialProbabilities(final double[] prob) {
+        if (pruningFloor <= 0) {
+            return normalizeProbabilities(prob);
+        }
+
+        double maxProbability;
+        if (activeCount == prob.length) {
+            maxProbability = normalizeProbabilities(prob);
+        } else {
+            double probabilitySum = 0;
+            for (int k = 0; k < activeCount; k++) {
+                probabilitySum += prob[activeLanguages[k]];
+            }
+
+            maxProbability = 0;
+            for (int k = 0; k < activeCount; k++) {
+                final int i = activeLanguages[k];
+                final double p = prob[i] / probabilitySum;
+                if (maxProbability < p) {
+                    maxProbability = p;
+                }
+
+                prob[i] = p;
+            }
+        }
+
+        int survivors = 0;
+        for (int k = 0; k < activeCount; k++) {
+            final int i = activeLanguages[k];
+            if ((prob[i] >= pruningFloor) || (prob[i] == maxProbability)) {
+                activeLanguages[survivors++] = i;
+            } else {
+                prob[i] = 0;
+            }
+        }
+
+        activeCount = survivors;
+        return maxProbability;
     }
 
-    private String wordProbToString(final double[] prob) {
+    private String wordProbToString(final int row) {
         try (final Formatter formatter = new Formatter()) {
-            for (int j = 0; j < prob.length; j++) {
-                final double p = prob[j];
+            for (int j = 0; j < languageCount; j++) {
+                final double p = probabilityMatrix.get(row, j);
                 if (p >= MINIMAL_PROBABILITY_TO_DISPLAY) {
                     final String s = languageList.get(j);
                     formatter.format(" %s:%.5f", s, p);
@@ -364,23 +1313,8 @@ public class Detector {
         }
     }
 
-    private static double normalizeProbabilities(final double[] prob) {
-        double probabilitySum = 0;
-        for (final double d : prob) {
-            probabilitySum += d;
-        }
-
-        double maxProbability = 0;
-        for (int i = 0; i < prob.length; i++) {
-            final double p = prob[i] / probabilitySum;
-            if (maxProbability < p) {
-                maxProbability = p;
-            }
-
-            prob[i] = p;
-        }
-
-        return maxProbability;
+    private double normalizeProbabilities(final double[] prob) {
+        return kernel.normalize(prob);
     }
 
     private List<Language> sortProbabilities(final double[] prob) {
@@ -404,4 +1338,33 @@ public class Detector {
             }
         }
     }
+
+    /**
+     * Growable sequence of matrix rows of the extracted n-grams
+     */
+    private static final class NGramSequence {
+        private int[] rows = new int[INITIAL_NGRAM_CAPACITY];
+        private int count;
+
+        void add(final int row) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+
+            rows[count++] = row;
+        }
+
+        void copyOf(final NGramSequence source) {
+            if (rows.length < source.count) {
+                rows = new int[source.rows.length];
+            }
+
+            System.arraycopy(source.rows, 0, rows, 0, source.count);
+            count = source.count;
+        }
+
+        void clear() {
+            count = 0;
+        }
+    }
 }
@@ -1,26 +1,38 @@
 package io.github.iquote.text_processing.language_detection;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
-import io.github.iquote.text_processing.language_detection.langdetect.LangProfileDocument;
 import io.github.iquote.text_processing.language_detection.util.LangProfile;
 import io.github.iquote.text_processing.language_detection.util.NGram;
+import io.github.iquote.text_processing.language_detection.util.NGramDictionary;
 
-import org.reflections.Reflections;
-import org.reflections.scanners.ResourcesScanner;
-import org.reflections.scanners.Scanners;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static java.util.Collections.unmodifiableList;
 
@@ -30,6 +42,8 @@ import static java.util.Collections.unmodifiableList;
  * <p>When the language detection,
  * construct Detector instance via {@link DetectorFactory#create()}.
  * See also {@link Detector}'s sample code.</p>
+ * <p>Alternatively use {@link DetectorFactory#detect(CharSequence)} which can be shared between threads
+ * and reuses per-thread detector state.</p>
  * <ul>
  *  <li>4x faster improvement based on Elmer Garduno's code. Thanks!</li>
  * </ul>
@@ -41,47 +55,258 @@ import static java.util.Collections.unmodifiableList;
 @SuppressWarnings("unchecked")
 public class DetectorFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(DetectorFactory.class);
-    private static final Pattern SHORT_MESSAGE_RESOURCES = Pattern.compile("^.*\\/sm\\/(.*)\\.json$");
-    private static final Pattern LONG_MESSAGE_RESOURCES = Pattern.compile("^.*\\/nr\\/(.*)\\.json$");
-    private static final Pattern JSON_MATCHER = Pattern.compile("^(.*)\\.json$");
+    private static final String SHORT_MESSAGE_SET = "sm";
+    private static final String LONG_MESSAGE_SET = "nr";
 
-    final Map<String, double[]> languageProbabilityMap = Maps.newHashMap();
-    final List<String> languages = Lists.newArrayList();
+    /**
+     * Per-thread detector buffers shared by all factories. Detectors are bound to a factory for a single
+     * detection and released afterwards, so threads never keep factories reachable.
+     */
+    private static final ThreadLocal<Detector> LOCAL_DETECTOR = ThreadLocal.withInitial(Detector::new);
+
+    /**
+     * N-Gram to matrix row mapping, shared between a factory and its language subset views
+     */
+    final NGramDictionary dictionary;
 
     /**
-     * Create new {@code DetectorFactory}
+     * N-Gram probability matrix. Rebuilt from {@link #profileData} whenever a profile is added or backed by
+     * compiled profile file contents, converted to the requested {@link ProbabilityStorage} once profiles are loaded.
+     */
+    ProbabilityMatrix matrix = new ProbabilityMatrix.Builder(0).build(0);
+    int languageCount;
+
+    private ProbabilityMatrix.Builder profileData;
+    private ProbabilityStorage storage = ProbabilityStorage.DOUBLE;
+
+    final List<String> languages;
+
+    private volatile ScriptRouter scriptRouter;
+    private volatile DetectionCache cache;
+    private volatile Settings settings = new Settings(TrialPolicy.FIXED, null);
+
+    /**
+     * Create new {@code DetectorFactory}. Profiles are found through the {@value ProfileIndex#FILE_NAME} index
+     * generated by {@link ProfileCompiler} during the build, profiles compiled into the binary format are
+     * preferred over JSON ones.
      *
      * @param shortMessages             Should this detector factory use short message profiles
      * @throws LangDetectException      In case language profiles weren't read for some reason
      */
     public DetectorFactory(final boolean shortMessages) {
-        final Pattern resourceFilter = shortMessages ? SHORT_MESSAGE_RESOURCES : LONG_MESSAGE_RESOURCES;
-        final Reflections reflections = new Reflections(DetectorFactory.class.getPackageName(), Scanners.Resources);
-        final List<String> resources = reflections.getResources(JSON_MATCHER)
-                .stream()
-                .filter(s -> resourceFilter.matcher(s).matches())
-                .collect(Collectors.toList());
+        this(shortMessages, ProbabilityStorage.DOUBLE);
+    }
+
+    /**
+     * Create new {@code DetectorFactory} storing n-gram probabilities in the given mode,
+     * see {@link #DetectorFactory(boolean)}
+     *
+     * @param shortMessages             Should this detector factory use short message profiles
+     * @param storage                   Probability storage mode
+     * @throws LangDetectException      In case language profiles weren't read for some reason
+     */
+    public DetectorFactory(final boolean shortMessages, final ProbabilityStorage storage) {
+        this();
 
-        final int languageCount = resources.size();
-        final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-        final ObjectMapper mapper = new ObjectMapper();
+        final URL index = DetectorFactory.class.getResource(ProfileIndex.FILE_NAME);
+        if (index == null) {
+            throw new LangDetectException(ErrorCode.PROFILE_NOT_LOADED, "Language profile index not found");
+        }
+
+        loadIndexedProfiles(index, shortMessages);
+        applyStorage(storage);
+    }
 
-        for (int i = 0; i < languageCount; i++) {
-            final String profile = resources.get(i);
+    /**
+     * Create new {@code DetectorFactory} from profiles of an external directory. The directory should contain
+     * a {@value ProfileIndex#FILE_NAME} index, i.e. the one written by {@link ProfileCompiler#compileAll(Path, List)}.
+     *
+     * @param profileDirectory          Directory holding profile index
+     * @param shortMessages             Should this detector factory use short message profiles
+     * @throws LangDetectException      In case language profiles weren't read for some reason
+     */
+    public DetectorFactory(final Path profileDirectory, final boolean shortMessages) {
+        this(profileDirectory, shortMessages, ProbabilityStorage.DOUBLE);
+    }
+
+    /**
+     * Create new {@code DetectorFactory} from profiles of an external directory storing n-gram probabilities
+     * in the given mode, see {@link #DetectorFactory(Path, boolean)}
+     *
+     * @param profileDirectory          Directory holding profile index
+     * @param shortMessages             Should this detector factory use short message profiles
+     * @param storage                   Probability storage mode
+     * @throws LangDetectException      In case language profiles weren't read for some reason
+     */
+    public DetectorFactory(final Path profileDirectory, final boolean shortMessages,
+                           final ProbabilityStorage storage) {
+        this();
 
-            try (final InputStream is = cl.getResourceAsStream(profile)) {
-                final LangProfileDocument lpd = mapper.readValue(is, LangProfileDocument.class);
-                final LangProfile langProfile = new LangProfile(lpd);
-                addProfile(langProfile, i, languageCount);
-            } catch (final IOException e) {
-                throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to read language profile", e);
+        try {
+            loadIndexedProfiles(profileDirectory.resolve(ProfileIndex.FILE_NAME).toUri().toURL(), shortMessages);
+        } catch (final MalformedURLException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Invalid profile directory", e);
+        }
+
+        applyStorage(storage);
+    }
+
+    /**
+     * Create new {@code DetectorFactory} from profiles compiled by {@link ProfileCompiler}.
+     * The file is memory mapped, so n-gram probabilities are not copied to the Java heap.
+     *
+     * @param compiledProfiles          Compiled profile file
+     * @throws LangDetectException      In case file can't be read or is not a valid compiled profile file
+     */
+    public DetectorFactory(final Path compiledProfiles) {
+        this(compiledProfiles, ProbabilityStorage.DOUBLE);
+    }
+
+    /**
+     * Create new {@code DetectorFactory} from profiles compiled by {@link ProfileCompiler} storing n-gram
+     * probabilities in the given mode. Modes other than {@link ProbabilityStorage#DOUBLE} copy probabilities
+     * to the Java heap.
+     *
+     * @param compiledProfiles          Compiled profile file
+     * @param storage                   Probability storage mode
+     * @throws LangDetectException      In case file can't be read or is not a valid compiled profile file
+     */
+    public DetectorFactory(final Path compiledProfiles, final ProbabilityStorage storage) {
+        this();
+
+        try {
+            ProfileCompiler.load(ProfileCompiler.map(compiledProfiles), this);
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to read compiled profiles", e);
+        }
+
+        applyStorage(storage);
+    }
+
+    private void loadIndexedProfiles(final URL indexLocation, final boolean shortMessages) {
+        final String set = shortMessages ? SHORT_MESSAGE_SET : LONG_MESSAGE_SET;
+
+        try {
+            final ProfileIndex index;
+            try (final Reader reader = new InputStreamReader(indexLocation.openStream(), StandardCharsets.UTF_8)) {
+                index = ProfileIndex.read(reader);
+            }
+
+            final ProfileIndex.Entry compiled = index.getCompiled(set);
+            if (compiled != null) {
+                final long checksum = ProfileCompiler.load(
+                        ProfileCompiler.open(new URL(indexLocation, compiled.path)), this);
+                verify(compiled, checksum, dictionary.size());
+                return;
+            }
+
+            final List<ProfileIndex.Entry> profiles = index.getProfiles(set);
+            if (profiles.isEmpty()) {
+                throw new LangDetectException(ErrorCode.PROFILE_NOT_LOADED, "No " + set + " language profiles indexed");
+            }
+
+            final int languageCount = profiles.size();
+            for (int i = 0; i < languageCount; i++) {
+                final ProfileIndex.Entry entry = profiles.get(i);
+                final byte[] data;
+                try (final InputStream is = new URL(indexLocation, entry.path).openStream()) {
+                    data = is.readAllBytes();
+                }
+
+                final LangProfile profile = ProfileCompiler.parseProfile(data);
+                verify(entry, ProfileCompiler.checksum(data), profile.getFrequencies().size());
+                addProfile(profile, i, languageCount);
             }
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to read language profiles", e);
+        }
+    }
+
+    private void applyStorage(final ProbabilityStorage storage) {
+        this.storage = storage;
+        matrix = ProbabilityMatrix.convert(matrix, storage);
+        scriptRouter = null;
+        profileData = null;
+    }
+
+    private static void verify(final ProfileIndex.Entry entry, final long checksum, final int nGramCount) {
+        if (entry.checksum != checksum || entry.nGramCount != nGramCount) {
+            throw new LangDetectException(ErrorCode.FORMAT, entry.path + " doesn't match profile index");
         }
     }
 
-    @VisibleForTesting
     DetectorFactory() {
-        // Used only for tests
+        dictionary = new NGramDictionary();
+        languages = Lists.newArrayList();
+    }
+
+    /**
+     * Create factory sharing language profiles of the given factory but having its own detection settings,
+     * i.e. cache, trial policy and content gate, which are reset to their defaults. Nothing is copied, so
+     * creating such a factory is cheap.
+     *
+     * @param source                    Factory holding language profiles, it must not be modified afterwards
+     */
+    DetectorFactory(final DetectorFactory source) {
+        dictionary = source.dictionary;
+        languages = source.languages;
+        matrix = source.matrix;
+        languageCount = source.languageCount;
+        storage = source.storage;
+        scriptRouter = source.getScriptRouter();
+    }
+
+    /**
+     * Create view of the given factory restricted to a subset of its languages. The view shares n-gram dictionary
+     * of the source factory and copies probabilities of the selected languages only, so detection work is
+     * proportional to the subset size. N-Grams unknown to all selected languages are ignored by the view. Languages keep the order of the source factory.
+     *
+     * @param source                    Factory holding all language profiles, it must not be modified afterwards
+     * @param subset                    Languages to be detected by the view
+     * @throws LangDetectException      In case subset is empty or contains languages unknown to the source factory
+     */
+    DetectorFactory(final DetectorFactory source, final Collection<String> subset) {
+        dictionary = source.dictionary;
+        languages = Lists.newArrayList();
+
+        for (final String language : subset) {
+            if (!source.languages.contains(language)) {
+                throw new LangDetectException(ErrorCode.INIT_PARAM, "Unknown language: " + language);
+            }
+        }
+
+        final int[] columns = IntStream.range(0, source.languages.size())
+                .filter(i -> subset.contains(source.languages.get(i)))
+                .toArray();
+        if (columns.length == 0) {
+            throw new LangDetectException(ErrorCode.INIT_PARAM, "Language subset is empty");
+        }
+
+        for (final int column : columns) {
+            languages.add(source.languages.get(column));
+        }
+
+        final int[] viewColumns = new int[source.languages.size()];
+        Arrays.fill(viewColumns, -1);
+        for (int i = 0; i < columns.length; i++) {
+            viewColumns[columns[i]] = i;
+        }
+
+        languageCount = columns.length;
+        final ProbabilityMatrix.Builder builder = new ProbabilityMatrix.Builder(languageCount);
+        final int rowCount = dictionary.size();
+
+        for (int row = 0; row < rowCount; row++) {
+            final int viewRow = row;
+            source.matrix.forEach(row, (column, p) -> {
+                if (viewColumns[column] >= 0) {
+                    builder.add(viewRow, viewColumns[column], p);
+                }
+            });
+        }
+
+        matrix = builder.build(rowCount);
+        applyStorage(source.storage);
     }
 
     /**
@@ -99,27 +324,66 @@ public class DetectorFactory {
             throw new LangDetectException(ErrorCode.DUPLICATE_LANGUAGE, language + " language profile is already defined");
         }
 
+        if (languages.isEmpty()) {
+            this.languageCount = languageCount;
+            profileData = new ProbabilityMatrix.Builder(languageCount);
+        } else if (this.languageCount != languageCount) {
+            throw new LangDetectException(ErrorCode.INIT_PARAM, "Language count mismatch: expected "
+                    + this.languageCount + " but got " + languageCount);
+        }
+
         languages.add(language);
         final Map<String, Integer> frequencies = profile.getFrequencies();
+        final int[] nGramCount = profile.getNGramCount();
 
         for (final Map.Entry<String, Integer> entry : frequencies.entrySet()) {
             final String ngram = entry.getKey();
-
-            if (!languageProbabilityMap.containsKey(ngram)) {
-                languageProbabilityMap.put(ngram, new double[languageCount]);
-            }
-
             final int length = ngram.length();
-            final int[] nGramCount = profile.getNGramCount();
+
             if ((length >= 1) && (length <= NGram.MAX_NGRAM_LENGTH)) {
-                final Double count = entry.getValue().doubleValue();
+                final int row = dictionary.add(NGram.pack(ngram));
+
+                final double count = entry.getValue().doubleValue();
                 final double probability = count / nGramCount[length - 1];
 
-                languageProbabilityMap.get(ngram)[index] = probability;
+                profileData.add(row, index, probability);
             } else {
                 LOGGER.warn("Invalid n-gram in language profile: {}", ngram);
             }
         }
+
+        matrix = profileData.build(dictionary.size());
+        scriptRouter = null;
+    }
+
+    /**
+     * Get router of texts dominated by a single script, it is built on first use
+     *
+     * @return          Script router of the loaded language profiles
+     */
+    ScriptRouter getScriptRouter() {
+        ScriptRouter router = scriptRouter;
+        if (router == null) {
+            router = new ScriptRouter(dictionary, matrix, languageCount);
+            scriptRouter = router;
+        }
+
+        return router;
+    }
+
+    /**
+     * Find matrix row of the given n-gram
+     *
+     * @param key       Packed n-gram key
+     * @return          Row index or {@link NGramDictionary#NOT_FOUND} if n-gram is unknown to all languages
+     */
+    int rowOf(final long key) {
+        final int row = dictionary.get(key);
+        if (row == NGramDictionary.NOT_FOUND || matrix.isEmpty(row)) {
+            return NGramDictionary.NOT_FOUND;
+        }
+
+        return row;
     }
 
     /**
@@ -146,14 +410,404 @@ public class DetectorFactory {
     }
 
     private Detector createDetector() {
+        requireProfiles();
+        return new Detector(this);
+    }
+
+    private void requireProfiles() {
         if (languages.isEmpty()) {
             throw new LangDetectException(ErrorCode.PROFILE_NOT_LOADED, "No language profile classes found");
         }
+    }
 
-        return new Detector(this);
+    /**
+     * Detect language of the given text and return the language name which has the highest probability.
+     * This method is safe to be called from multiple threads: every thread reuses its own {@link Detector}
+     * with default parameters together with all of its buffers, so no per-call detector state is allocated.
+     *
+     * @param text                      Text to detect language for
+     * @return                          Detected language name which has most probability.
+     * @throws LangDetectException      In case factory contains no language profiles or there are
+     *                                  no valid features in text
+     */
+    public String detect(final CharSequence text) {
+        final Settings settings = this.settings;
+        final Detector detector = prepareDetector(text, settings);
+        try {
+            final DetectionCache cache = this.cache;
+            if (cache == null) {
+                return detector.detect();
+            }
+
+            final DetectionCache.Result result = detectCached(detector, cache, settings);
+            return (result.languages.length > 0) ? languages.get(result.languages[0]) : Detector.UNKNOWN_LANG;
+        } finally {
+            detector.release();
+        }
+    }
+
+    /**
+     * Detect language candidates of the given text and pass the ones which have high probabilities to
+     * the sink. This method is safe to be called from multiple threads, see {@link #detect(CharSequence)}.
+     *
+     * @param text                      Text to detect language for
+     * @param sink                      Sink receiving languages whose probabilities are over threshold,
+     *                                  ordered by probabilities descendently
+     * @throws LangDetectException      In case factory contains no language profiles or there are
+     *                                  no valid features in text
+     */
+    public void detectProbabilities(final CharSequence text, final ResultSink sink) {
+        final Settings settings = this.settings;
+        final Detector detector = prepareDetector(text, settings);
+        final DetectionCache.Result result;
+        try {
+            final DetectionCache cache = this.cache;
+            if (cache == null) {
+                detector.getProbabilities(sink);
+                return;
+            }
+
+            result = detectCached(detector, cache, settings);
+        } finally {
+            detector.release();
+        }
+
+        for (int i = 0; i < result.languages.length; i++) {
+            sink.accept(languages.get(result.languages[i]), result.probabilities[i]);
+        }
+    }
+
+    /**
+     * Detect language of the given text without throwing an exception if there are no valid features in text.
+     * This method is safe to be called from multiple threads, see {@link #detect(CharSequence)}.
+     *
+     * @param text                      Text to detect language for
+     * @return                          Detection result holding the top language,
+     *                                  {@link DetectionResult.Status#NO_FEATURES} if there are no valid features in text
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public DetectionResult detectResult(final CharSequence text) {
+        return detectResult(text, new DetectionResult());
+    }
+
+    /**
+     * Detect language of the given text into the given result without throwing an exception if there are
+     * no valid features in text. The result keeps up to {@link DetectionResult#capacity()} languages whose
+     * probabilities are over the detection threshold, so callers reusing a result per thread allocate nothing
+     * per text. This method is safe to be called from multiple threads, see {@link #detect(CharSequence)},
+     * the result itself is not.
+     *
+     * @param text                      Text to detect language for
+     * @param result                    Result to be filled, its previous content is discarded
+     * @return                          The given result
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public DetectionResult detectResult(final CharSequence text, final DetectionResult result) {
+        final Settings settings = this.settings;
+        final Detector detector = prepareDetector(text, settings);
+        try {
+            final DetectionCache cache = this.cache;
+            if (cache == null) {
+                return detector.detectResult(result);
+            }
+
+            return fillResult(cachedResult(detector, cache, settings), result);
+        } finally {
+            detector.release();
+        }
+    }
+
+    /**
+     * Detect language of the given text spending at most the given time on scoring, see
+     * {@link #detectResult(CharSequence, long, CancellationToken, DetectionResult)}
+     *
+     * @param text                      Text to detect language for
+     * @param budget                    Time allowed to be spent on detection, negative budget is already exhausted
+     * @return                          Detection result holding the top language
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public DetectionResult detectResult(final CharSequence text, final Duration budget) {
+        return detectResult(text, Detector.deadlineAfter(budget), null, new DetectionResult());
+    }
+
+    /**
+     * Detect language of the given text into the given result stopping at the given deadline or as soon as
+     * the token is cancelled, see {@link Detector#detect(long, CancellationToken, DetectionResult)}.
+     * Results which were cut short are not cached. This method is safe to be called from multiple threads,
+     * see {@link #detect(CharSequence)}, the result itself is not.
+     *
+     * @param text                      Text to detect language for
+     * @param deadlineNanos             Deadline in terms of {@link System#nanoTime()}
+     * @param token                     Cancellation token, {@code null} if detection can't be cancelled
+     * @param result                    Result to be filled, its previous content is discarded
+     * @return                          The given result
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public DetectionResult detectResult(final CharSequence text, final long deadlineNanos,
+                                        final CancellationToken token, final DetectionResult result) {
+        final Settings settings = this.settings;
+        final Detector detector = prepareDetector(text, settings);
+        try {
+            final DetectionCache cache = this.cache;
+            if (cache == null) {
+                return detector.detect(deadlineNanos, token, result);
+            }
+
+            final long key = detector.cacheKey(settings.cacheId);
+            final DetectionCache.Result cached = cache.get(key);
+            if (cached != null) {
+                return fillResult(cached, result);
+            }
+
+            detector.detect(deadlineNanos, token, result);
+            if (!result.isCutShort()) {
+                cache.put(key, detector.toCacheResult());
+            }
+
+            return result;
+        } finally {
+            detector.release();
+        }
+    }
+
+    private DetectionResult fillResult(final DetectionCache.Result cached, final DetectionResult result) {
+        if (cached == DetectionCache.Result.NO_FEATURES) {
+            result.clear(languages, DetectionResult.Status.NO_FEATURES);
+            return result;
+        }
+
+        result.clear(languages, DetectionResult.Status.UNKNOWN);
+        for (int i = 0; i < cached.languages.length; i++) {
+            result.offer(cached.languages[i], cached.probabilities[i]);
+        }
+
+        return result;
+    }
+
+    private DetectionCache.Result detectCached(final Detector detector, final DetectionCache cache,
+                                               final Settings settings) {
+        final DetectionCache.Result result = cachedResult(detector, cache, settings);
+        if (result == DetectionCache.Result.NO_FEATURES) {
+            throw LangDetectException.stackless(ErrorCode.CANNOT_DETECT, "no features in text");
+        }
+
+        return result;
+    }
+
+    private DetectionCache.Result cachedResult(final Detector detector, final DetectionCache cache,
+                                               final Settings settings) {
+        final long key = detector.cacheKey(settings.cacheId);
+        DetectionCache.Result result = cache.get(key);
+        if (result == null) {
+            result = detector.toCacheResult();
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Set cache of detection results used by {@link #detect(CharSequence)},
+     * {@link #detectProbabilities(CharSequence, ResultSink)} and {@code detectAll} methods.
+     * Cache may be shared by several factories. Detectors obtained via {@link #create()} don't use it.
+     *
+     * @param cache                     Detection result cache, {@code null} disables caching
+     */
+    public void setCache(final DetectionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get cache of detection results
+     *
+     * @return                          Detection result cache, {@code null} if caching is disabled
+     */
+    public DetectionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Set policy controlling trials of the {@link ScoringEngine#SAMPLING} algorithm used by detectors created
+     * afterwards via {@link #create()} and by all detection methods of this factory.
+     * Results cached under the previous settings are not reused.
+     *
+     * @param trialPolicy               Trial policy, {@link TrialPolicy#FIXED} by default
+     */
+    public synchronized void setTrialPolicy(final TrialPolicy trialPolicy) {
+        settings = new Settings(Objects.requireNonNull(trialPolicy, "trialPolicy"), settings.contentGate);
+    }
+
+    /**
+     * Get policy controlling trials of the {@link ScoringEngine#SAMPLING} algorithm
+     *
+     * @return                          Trial policy
+     */
+    public TrialPolicy getTrialPolicy() {
+        return settings.trialPolicy;
+    }
+
+    /**
+     * Set gate rejecting texts with too little linguistic content before they are scored, used by detectors
+     * created afterwards via {@link #create()} and by all detection methods of this factory.
+     * Results cached under the previous settings are not reused.
+     *
+     * @param contentGate               Content gate, {@code null} disables the gate which is the default
+     */
+    public synchronized void setContentGate(final ContentGate contentGate) {
+        settings = new Settings(settings.trialPolicy, contentGate);
+    }
+
+    /**
+     * Get gate rejecting texts with too little linguistic content
+     *
+     * @return                          Content gate, {@code null} if there is none
+     */
+    public ContentGate getContentGate() {
+        return settings.contentGate;
+    }
+
+    /**
+     * Detect languages of all the given texts in parallel using the common {@link ForkJoinPool}.
+     * Every worker thread reuses its own detector state, see {@link #detect(CharSequence)}.
+     *
+     * @param texts                     Texts to detect languages for
+     * @return                          Detected languages in the order of input texts, texts without valid
+     *                                  features are reported as {@code "unknown"}
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public List<String> detectAll(final List<? extends CharSequence> texts) {
+        return detectAll(texts, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Detect languages of all the given texts in parallel using the given executor.
+     * {@link ForkJoinPool} executors split the work recursively and balance it by work-stealing,
+     * other executors receive fixed size batches of texts.
+     *
+     * @param texts                     Texts to detect languages for
+     * @param executor                  Executor performing detection
+     * @return                          Detected languages in the order of input texts, texts without valid
+     *                                  features are reported as {@code "unknown"}
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public List<String> detectAll(final List<? extends CharSequence> texts, final Executor executor) {
+        final List<? extends CharSequence> source = (texts instanceof RandomAccess) ? texts : new ArrayList<>(texts);
+        final int size = source.size();
+        final String[] results = new String[size];
+
+        if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(new BatchDetectionTask(this, source, results, 0, size));
+        } else {
+            final List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int from = 0; from < size; from += BatchDetectionTask.BATCH_SIZE) {
+                final int start = from;
+                final int end = Math.min(size, from + BatchDetectionTask.BATCH_SIZE);
+
+                batches.add(CompletableFuture.runAsync(
+                        () -> BatchDetectionTask.detectRange(this, source, results, start, end), executor));
+            }
+
+            try {
+                CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+            } catch (final CompletionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw e;
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Detect languages of all the texts of the given stream in parallel. The stream is processed by the
+     * {@link ForkJoinPool} it is evaluated in, which is the common pool unless the call is made from
+     * a task of another pool.
+     *
+     * @param texts                     Texts to detect languages for
+     * @return                          Detected languages in the encounter order of the stream, texts without
+     *                                  valid features are reported as {@code "unknown"}
+     * @throws LangDetectException      In case factory contains no language profiles
+     */
+    public List<String> detectAll(final Stream<? extends CharSequence> texts) {
+        return texts.parallel()
+                .map(this::detectOrUnknown)
+                .collect(Collectors.toList());
+    }
+
+    String detectOrUnknown(final CharSequence text) {
+        return detectResult(text).getLanguage();
+    }
+
+    /**
+     * Bind per-thread detector to this factory and append the text to it. Detector has to be released after
+     * detection. A fresh detector is used if the per-thread one is busy, i.e. when a result sink detects
+     * another text.
+     */
+    private Detector prepareDetector(final CharSequence text, final Settings settings) {
+        requireProfiles();
+
+        final Detector local = LOCAL_DETECTOR.get();
+        final Detector detector = local.isBound() ? new Detector() : local;
+        detector.bind(this);
+        detector.setTrialPolicy(settings.trialPolicy);
+        detector.setContentGate(settings.contentGate);
+
+        try {
+            detector.append(text);
+        } catch (final RuntimeException e) {
+            detector.release();
+            throw e;
+        }
+
+        return detector;
     }
 
     public List<String> getLangList() {
         return unmodifiableList(languages);
     }
+
+    /**
+     * Get id of the given language. Ids are indexes in {@link #getLangList()}, they are used by
+     * {@link DetectionResult} and let callers map detected languages to their own data without hashing codes.
+     *
+     * @param language                  Language code
+     * @return                          Language id, {@code -1} if factory has no profile of the language
+     */
+    public int getLanguageId(final String language) {
+        return languages.indexOf(language);
+    }
+
+    /**
+     * Get language of the given id
+     *
+     * @param languageId                Language id
+     * @return                          Language code
+     * @throws IndexOutOfBoundsException In case there is no language of the given id
+     */
+    public String getLanguage(final int languageId) {
+        return languages.get(languageId);
+    }
+
+    /**
+     * Detection settings of the factory. Settings are replaced as a whole, so every detection uses a consistent
+     * snapshot of them. Every snapshot has its own cache id, so results cached under other settings are not reused.
+     */
+    private static final class Settings {
+        private final TrialPolicy trialPolicy;
+        private final ContentGate contentGate;
+        private final long cacheId = DetectionCache.nextFactoryId();
+
+        private Settings(final TrialPolicy trialPolicy, final ContentGate contentGate) {
+            this.trialPolicy = trialPolicy;
+            this.contentGate = contentGate;
+        }
+    }
 }
@@ -30,5 +30,6 @@ public enum ErrorCode {
     TRAIN_DATA_FORMAT,
     INIT_PARAM,
     FAILED_TO_INITIALIZE,
+    CANNOT_READ_TEXT,
     ;
 }
@@ -42,6 +42,23 @@ public class LangDetectException extends RuntimeException {
         this.code = code;
     }
 
+    /**
+     * Create exception without stack trace, used for expected failures such as texts without valid features
+     * which are too frequent to pay for filling in the stack trace
+     *
+     * @param code          Error code
+     * @param message       Detailed error description
+     * @return              Exception without stack trace
+     */
+    static LangDetectException stackless(final ErrorCode code, final String message) {
+        return new LangDetectException(code, message, false);
+    }
+
+    private LangDetectException(final ErrorCode code, final String message, final boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.code = code;
+    }
+
     /**
      * Get the error code
      *
@@ -14,6 +14,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
 
@@ -30,6 +31,11 @@ public class LanguageProfileGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger(LanguageProfileGenerator.class);
     private static final int TAG_THRESHOLD = 100;
 
+    /**
+     * Size of buffers training data is read with
+     */
+    static final int READ_BUFFER_SIZE = 1 << 20;
+
     /**
      * Load Wikipedia abstract database file and generate its language profile
      *
@@ -42,14 +48,34 @@ public class LanguageProfileGenerator {
     public LangProfileDocument loadFromWikipediaAbstract(final String lang, final InputStream is,
                                                          final boolean isGzip) throws LangDetectException {
         final LangProfile profile = new LangProfile(lang);
-        final XMLInputFactory factory = XMLInputFactory.newInstance();
 
         try (
                 final InputStream s = wrapIfNeeded(is, isGzip);
                 final InputStreamReader isr = new InputStreamReader(s, StandardCharsets.UTF_8);
-                final BufferedReader br = new BufferedReader(isr)
+                final BufferedReader br = new BufferedReader(isr, READ_BUFFER_SIZE)
         ) {
-            final XMLStreamReader reader = factory.createXMLStreamReader(br);
+            final int count = readWikipediaAbstract(profile, br);
+            LOGGER.debug(lang + ':' + count);
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Cannot open training database", e);
+        }
+
+        return profile.toDocument();
+    }
+
+    /**
+     * Update language profile with abstracts of Wikipedia abstract database
+     *
+     * @param profile               Language profile to be updated
+     * @param source                Training data source
+     * @return                      Amount of abstracts read
+     * @throws LangDetectException  In case training database is an invalid XML
+     */
+    static int readWikipediaAbstract(final LangProfile profile, final Reader source) {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        try {
+            final XMLStreamReader reader = factory.createXMLStreamReader(source);
             final TagExtractor tagExtractor = new TagExtractor("abstract", TAG_THRESHOLD);
 
             while (reader.hasNext()) {
@@ -58,15 +84,10 @@ public class LanguageProfileGenerator {
                 processElement(profile, reader, tagExtractor, next);
             }
 
-            final int count = tagExtractor.count();
-            LOGGER.debug(lang + ':' + count);
-        } catch (final IOException e) {
-            throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Cannot open training database", e);
+            return tagExtractor.count();
         } catch (final XMLStreamException e) {
             throw new LangDetectException(ErrorCode.TRAIN_DATA_FORMAT, "Training database is an invalid XML", e);
         }
-
-        return profile.toDocument();
     }
 
     @SuppressWarnings({"resource", "IOResourceOpenedButNotSafelyClosed"})
@@ -74,7 +95,7 @@ public class LanguageProfileGenerator {
         return isGzip ? new GZIPInputStream(is) : is;
     }
 
-    private void processElement(final LangProfile profile, final XMLStreamReader reader,
+    private static void processElement(final LangProfile profile, final XMLStreamReader reader,
                                 final TagExtractor tagExtractor, final int next) {
         if (next == START_ELEMENT) {
             final String tag = reader.getName().toString();
@@ -103,15 +124,9 @@ public class LanguageProfileGenerator {
 
         try (
                 final InputStreamReader isr = new InputStreamReader(is, StandardCharsets.UTF_8);
-                final BufferedReader br = new BufferedReader(isr)
+                final BufferedReader br = new BufferedReader(isr, READ_BUFFER_SIZE)
         ) {
-            int count = 0;
-            while (br.ready()) {
-                final String line = br.readLine();
-                profile.update(line);
-                count++;
-            }
-
+            final int count = readText(profile, br);
             LOGGER.debug(lang + ':' + count);
         } catch (final IOException e) {
             throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Cannot open training database ", e);
@@ -119,4 +134,23 @@ public class LanguageProfileGenerator {
 
         return profile.toDocument();
     }
+
+    /**
+     * Update language profile with every line of the text. Lines are read until the end of the stream rather than
+     * while the reader is {@link BufferedReader#ready() ready}, so slow streams are read completely.
+     *
+     * @param profile               Language profile to be updated
+     * @param reader                Training data source
+     * @return                      Amount of lines read
+     * @throws IOException          In case reading failed
+     */
+    static int readText(final LangProfile profile, final BufferedReader reader) throws IOException {
+        int count = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            profile.update(line);
+            count++;
+        }
+
+        return count;
+    }
 }
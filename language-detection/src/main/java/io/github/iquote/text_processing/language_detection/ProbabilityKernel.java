@@ -0,0 +1,168 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * <p>Arithmetic loops over language columns: probability updates, log-likelihood accumulation and
+ * normalization. This class holds the scalar implementation.</p>
+ * <p>On Java 17+ the multi-release jar adds a {@code jdk.incubator.vector} based implementation, it is used
+ * when the JVM is started with {@code --add-modules jdk.incubator.vector}. Vectorized updates and scores are
+ * bit-for-bit equal to the scalar ones, normalization may differ in the last bits of the sum.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+class ProbabilityKernel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProbabilityKernel.class);
+    private static final String VECTOR_KERNEL = ProbabilityKernel.class.getPackage().getName()
+            + ".VectorProbabilityKernel";
+
+    /**
+     * Scalar implementation available on every JVM
+     */
+    static final ProbabilityKernel SCALAR = new ProbabilityKernel();
+
+    private static final ProbabilityKernel DEFAULT = select();
+
+    ProbabilityKernel() {
+        // Scalar implementation
+    }
+
+    /**
+     * Get the fastest implementation available in the running JVM
+     *
+     * @return              Vectorized implementation if available, {@link #SCALAR} otherwise
+     */
+    static ProbabilityKernel get() {
+        return DEFAULT;
+    }
+
+    private static ProbabilityKernel select() {
+        try {
+            final ProbabilityKernel kernel = (ProbabilityKernel) Class.forName(VECTOR_KERNEL)
+                    .getDeclaredConstructor()
+                    .newInstance();
+            LOGGER.debug("Using vectorized probability kernel");
+
+            return kernel;
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Vectorized probability kernel is not available, using scalar one: {}", e.toString());
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Multiply language probabilities by a dense row of smoothed n-gram probabilities:
+     * {@code prob[i] *= 1 + values[offset + i] * scale}
+     *
+     * @param prob          Language probabilities to update
+     * @param values        Matrix values
+     * @param offset        Row offset
+     * @param scale         Reciprocal of the smoothing weight
+     */
+    void update(final double[] prob, final double[] values, final int offset, final double scale) {
+        for (int i = 0; i < prob.length; i++) {
+            prob[i] *= 1 + values[offset + i] * scale;
+        }
+    }
+
+    /**
+     * Same as {@link #update(double[], double[], int, double)} for 32-bit matrix values
+     *
+     * @param prob          Language probabilities to update
+     * @param values        Matrix values
+     * @param offset        Row offset
+     * @param scale         Reciprocal of the smoothing weight
+     */
+    void update(final double[] prob, final float[] values, final int offset, final double scale) {
+        for (int i = 0; i < prob.length; i++) {
+            prob[i] *= 1 + values[offset + i] * scale;
+        }
+    }
+
+    /**
+     * Same as {@link #update(double[], double[], int, double)} for matrix values read from a buffer,
+     * i.e. memory mapped profiles
+     *
+     * @param prob          Language probabilities to update
+     * @param values        Matrix values
+     * @param offset        Row offset
+     * @param scale         Reciprocal of the smoothing weight
+     */
+    void update(final double[] prob, final DoubleBuffer values, final int offset, final double scale) {
+        for (int i = 0; i < prob.length; i++) {
+            prob[i] *= 1 + values.get(offset + i) * scale;
+        }
+    }
+
+    /**
+     * Add a dense row of log-likelihoods to language scores: {@code scores[i] += count * table[offset + i]}
+     *
+     * @param scores        Language log scores to update
+     * @param table         Log-likelihood table
+     * @param offset        Row offset
+     * @param count         N-Gram occurrence count
+     */
+    void accumulate(final double[] scores, final double[] table, final int offset, final double count) {
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] += count * table[offset + i];
+        }
+    }
+
+    /**
+     * Same as {@link #accumulate(double[], double[], int, double)} for 32-bit log-likelihood tables
+     *
+     * @param scores        Language log scores to update
+     * @param table         Log-likelihood table
+     * @param offset        Row offset
+     * @param count         N-Gram occurrence count
+     */
+    void accumulate(final double[] scores, final float[] table, final int offset, final double count) {
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] += count * table[offset + i];
+        }
+    }
+
+    /**
+     * Normalize language probabilities to sum up to 1
+     *
+     * @param prob          Language probabilities
+     * @return              Maximal normalized probability
+     */
+    double normalize(final double[] prob) {
+        double probabilitySum = 0;
+        for (final double d : prob) {
+            probabilitySum += d;
+        }
+
+        double maxProbability = 0;
+        for (int i = 0; i < prob.length; i++) {
+            final double p = prob[i] / probabilitySum;
+            if (maxProbability < p) {
+                maxProbability = p;
+            }
+
+            prob[i] = p;
+        }
+
+        return maxProbability;
+    }
+}
@@ -0,0 +1,698 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>Matrix of n-gram probabilities, one row per n-gram and one column per language.</p>
+ * <p>Most n-grams occur in a handful of languages only, so rows are stored as sparse postings
+ * ({@code column, probability} pairs). Rows having more than {@code 1 / }{@value #DENSE_ROW_DIVISOR} of
+ * languages non-zero are stored densely. Values of both kinds share a single value array: dense rows first,
+ * followed by postings.</p>
+ * <p>Smoothing is applied analytically: every language gets the smoothing weight, so updates are expressed
+ * relatively to it and languages absent from a sparse row are left untouched.</p>
+ * <p>Implementations differ by {@link ProbabilityStorage} mode, values are dequantized inside the scoring loops
+ * so callers never see the storage format.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+abstract class ProbabilityMatrix {
+    /**
+     * Row is stored densely if more than {@code columns / DENSE_ROW_DIVISOR} of its values are non-zero
+     */
+    static final int DENSE_ROW_DIVISOR = 4;
+
+    private static final int NOT_DENSE = -1;
+
+    final int columns;
+
+    /**
+     * Value offset of every dense row, {@value #NOT_DENSE} for rows stored as postings
+     */
+    final int[] denseOffsets;
+
+    /**
+     * Posting range {@code [postingStarts[row], postingStarts[row + 1])} of every row, empty for dense rows
+     */
+    final int[] postingStarts;
+
+    /**
+     * Language column of every posting
+     */
+    final short[] postingColumns;
+
+    /**
+     * Offset of the first posting value, i.e. size of the dense rows block
+     */
+    final int postingBase;
+
+    private volatile LogScorer defaultLogScorer;
+
+    ProbabilityMatrix(final int columns, final int[] denseOffsets, final int[] postingStarts,
+                      final short[] postingColumns, final int postingBase) {
+        this.columns = columns;
+        this.denseOffsets = denseOffsets;
+        this.postingStarts = postingStarts;
+        this.postingColumns = postingColumns;
+        this.postingBase = postingBase;
+    }
+
+    ProbabilityMatrix(final ProbabilityMatrix layout) {
+        this(layout.columns, layout.denseOffsets, layout.postingStarts, layout.postingColumns, layout.postingBase);
+    }
+
+    /**
+     * Wrap 64-bit probabilities laid out as described in {@link ProbabilityMatrix}
+     *
+     * @param columns           Language count
+     * @param denseOffsets      Value offset of every dense row, {@code -1} for rows stored as postings
+     * @param postingStarts     Posting range start of every row followed by the total posting count
+     * @param postingColumns    Language column of every posting
+     * @param values            Dense rows followed by posting values
+     * @return                  Matrix reading the buffer directly
+     */
+    static ProbabilityMatrix of(final int columns, final int[] denseOffsets, final int[] postingStarts,
+                                final short[] postingColumns, final DoubleBuffer values) {
+        return new DoubleMatrix(columns, denseOffsets, postingStarts, postingColumns, values);
+    }
+
+    /**
+     * Convert matrix into the given storage mode
+     *
+     * @param source        Matrix to be converted
+     * @param storage       Target storage mode
+     * @return              Matrix in target storage mode, source itself if it is stored as {@code double}s already
+     */
+    static ProbabilityMatrix convert(final ProbabilityMatrix source, final ProbabilityStorage storage) {
+        switch (storage) {
+            case DOUBLE:
+                return (source instanceof DoubleMatrix) ? source : new DoubleMatrix(source);
+            case FLOAT:
+                return new FloatMatrix(source);
+            case QUANTIZED_16:
+                return new QuantizedMatrix(source, (1 << Short.SIZE) - 1);
+            case QUANTIZED_8:
+                return new QuantizedMatrix(source, (1 << Byte.SIZE) - 1);
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+
+    /**
+     * Get row count
+     *
+     * @return              Row count
+     */
+    int rows() {
+        return denseOffsets.length;
+    }
+
+    /**
+     * Get total amount of stored values, i.e. dense rows block size plus posting count
+     *
+     * @return              Value count
+     */
+    int valueCount() {
+        return postingBase + postingColumns.length;
+    }
+
+    /**
+     * Get stored value
+     *
+     * @param index         Value index
+     * @return              Probability
+     */
+    abstract double value(int index);
+
+    /**
+     * Get probability of n-gram for the language
+     *
+     * @param row           N-Gram row
+     * @param column        Language column
+     * @return              Probability
+     */
+    double get(final int row, final int column) {
+        final int offset = denseOffsets[row];
+        if (offset != NOT_DENSE) {
+            return value(offset + column);
+        }
+
+        for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+            if (postingColumns[i] == column) {
+                return value(postingBase + i);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Pass all non-zero probabilities of n-gram to the consumer in column order
+     *
+     * @param row           N-Gram row
+     * @param consumer      Consumer of language columns and probabilities
+     */
+    void forEach(final int row, final PostingConsumer consumer) {
+        final int offset = denseOffsets[row];
+        if (offset != NOT_DENSE) {
+            for (int i = 0; i < columns; i++) {
+                final double p = value(offset + i);
+                if (p != 0) {
+                    consumer.accept(i, p);
+                }
+            }
+        } else {
+            for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                consumer.accept(postingColumns[i], value(postingBase + i));
+            }
+        }
+    }
+
+    /**
+     * Check whether n-gram has zero probability for every language
+     *
+     * @param row           N-Gram row
+     * @return              {@code true} if row holds no probabilities
+     */
+    boolean isEmpty(final int row) {
+        return denseOffsets[row] == NOT_DENSE && postingStarts[row] == postingStarts[row + 1];
+    }
+
+    /**
+     * Multiply language probabilities by smoothed n-gram probabilities divided by the smoothing weight:
+     * {@code prob[i] *= 1 + p[row][i] / weight}. Languages absent from a sparse row keep their probabilities.
+     *
+     * @param prob          Language probabilities to update
+     * @param row           N-Gram row
+     * @param weight        Smoothing weight
+     * @param kernel        Kernel updating dense rows
+     */
+    abstract void update(double[] prob, int row, double weight, ProbabilityKernel kernel);
+
+    /**
+     * Multiply probabilities of the given languages only, see {@link #update(double[], int, double, ProbabilityKernel)}.
+     * Sparse rows are updated as usual, so languages outside of the given ones should have zero probabilities.
+     *
+     * @param prob          Language probabilities to update
+     * @param row           N-Gram row
+     * @param weight        Smoothing weight
+     * @param kernel        Kernel updating sparse rows
+     * @param active        Columns of languages to update
+     * @param activeCount   Amount of columns in {@code active}
+     */
+    void update(final double[] prob, final int row, final double weight, final ProbabilityKernel kernel,
+                final int[] active, final int activeCount) {
+        final int offset = denseOffsets[row];
+        if (offset == NOT_DENSE) {
+            update(prob, row, weight, kernel);
+            return;
+        }
+
+        final double scale = 1 / weight;
+        for (int k = 0; k < activeCount; k++) {
+            final int i = active[k];
+            prob[i] *= 1 + denseValue(offset + i) * scale;
+        }
+    }
+
+    /**
+     * Get probability stored in a dense row
+     *
+     * @param index         Value index
+     * @return              Probability
+     */
+    double denseValue(final int index) {
+        return value(index);
+    }
+
+    /**
+     * Get amount of memory occupied by matrix data
+     *
+     * @return              Size in bytes
+     */
+    long memoryUsage() {
+        return (long) (denseOffsets.length + postingStarts.length) * Integer.BYTES
+                + (long) postingColumns.length * Short.BYTES + valueMemoryUsage();
+    }
+
+    abstract long valueMemoryUsage();
+
+    /**
+     * Get scorer adding n-gram log-likelihoods {@code log(1 + p / weight)}, i.e. {@code log(weight + p)} shifted
+     * by the constant {@code -log(weight)} which doesn't affect language ranking. Languages absent from a sparse
+     * row get zero. Log-likelihood table of the {@link Detector#DEFAULT_WEIGHT default weight} is computed once
+     * and shared between detectors, log-likelihoods of other weights are computed while scoring, so arbitrary
+     * smoothing parameters never hold copies of the matrix.
+     *
+     * @param weight        Smoothing weight added to every n-gram probability
+     * @return              Log-likelihood scorer
+     */
+    LogScorer getLogScorer(final double weight) {
+        if (weight != Detector.DEFAULT_WEIGHT) {
+            return computeLogScorer(weight);
+        }
+
+        LogScorer scorer = defaultLogScorer;
+        if (scorer == null) {
+            scorer = createLogScorer(weight);
+            defaultLogScorer = scorer;
+        }
+
+        return scorer;
+    }
+
+    /**
+     * Create scorer looking log-likelihoods up in a table computed in advance
+     *
+     * @param weight        Smoothing weight added to every n-gram probability
+     * @return              Log-likelihood scorer
+     */
+    abstract LogScorer createLogScorer(double weight);
+
+    /**
+     * Create scorer computing log-likelihoods of every value it reads
+     *
+     * @param weight        Smoothing weight added to every n-gram probability
+     * @return              Log-likelihood scorer
+     */
+    LogScorer computeLogScorer(final double weight) {
+        return (scores, row, count, kernel) -> {
+            final int offset = denseOffsets[row];
+            if (offset != NOT_DENSE) {
+                for (int i = 0; i < scores.length; i++) {
+                    scores[i] += count * Math.log1p(denseValue(offset + i) / weight);
+                }
+            } else {
+                for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                    scores[postingColumns[i]] += count * Math.log1p(value(postingBase + i) / weight);
+                }
+            }
+        };
+    }
+
+    /**
+     * Log-likelihood scorer for a fixed smoothing weight
+     */
+    @FunctionalInterface
+    interface LogScorer {
+        /**
+         * Add {@code count} log-likelihoods of n-gram to language scores
+         *
+         * @param scores        Language log scores to update
+         * @param row           N-Gram row
+         * @param count         N-Gram occurrence count
+         * @param kernel        Kernel accumulating dense rows
+         */
+        void accumulate(double[] scores, int row, double count, ProbabilityKernel kernel);
+    }
+
+    /**
+     * Consumer of n-gram probabilities
+     */
+    @FunctionalInterface
+    interface PostingConsumer {
+        /**
+         * Accept non-zero probability
+         *
+         * @param column        Language column
+         * @param p             Probability
+         */
+        void accept(int column, double p);
+    }
+
+    /**
+     * Collects non-zero probabilities in any order and lays them out into a 64-bit matrix
+     */
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final int columns;
+        private int size;
+        private int[] rows = new int[INITIAL_CAPACITY];
+        private short[] postingColumns = new short[INITIAL_CAPACITY];
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        Builder(final int columns) {
+            if (columns > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many languages: " + columns);
+            }
+
+            this.columns = columns;
+        }
+
+        /**
+         * Add probability, zero probabilities are ignored
+         *
+         * @param row           N-Gram row
+         * @param column        Language column
+         * @param p             Probability
+         */
+        void add(final int row, final int column, final double p) {
+            if (p == 0) {
+                return;
+            }
+
+            if (size == rows.length) {
+                final int capacity = size * 2;
+                rows = Arrays.copyOf(rows, capacity);
+                postingColumns = Arrays.copyOf(postingColumns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+
+            rows[size] = row;
+            postingColumns[size] = (short) column;
+            values[size] = p;
+            size++;
+        }
+
+        /**
+         * Lay out probabilities added so far
+         *
+         * @param rowCount      Row count, rows without probabilities are empty
+         * @return              64-bit matrix
+         */
+        ProbabilityMatrix build(final int rowCount) {
+            final int[] starts = new int[rowCount + 1];
+            for (int i = 0; i < size; i++) {
+                starts[rows[i] + 1]++;
+            }
+            for (int row = 0; row < rowCount; row++) {
+                starts[row + 1] += starts[row];
+            }
+
+            final int[] order = new int[size];
+            final int[] cursors = Arrays.copyOf(starts, rowCount);
+            for (int i = 0; i < size; i++) {
+                order[cursors[rows[i]]++] = i;
+            }
+
+            final int[] denseOffsets = new int[rowCount];
+            int denseRows = 0;
+            int postingCount = 0;
+            for (int row = 0; row < rowCount; row++) {
+                final int count = starts[row + 1] - starts[row];
+                if (count * DENSE_ROW_DIVISOR > columns) {
+                    denseOffsets[row] = denseRows++ * columns;
+                } else {
+                    denseOffsets[row] = NOT_DENSE;
+                    postingCount += count;
+                }
+            }
+
+            final int postingBase = denseRows * columns;
+            final int[] postingStarts = new int[rowCount + 1];
+            final short[] layoutColumns = new short[postingCount];
+            final double[] layoutValues = new double[postingBase + postingCount];
+
+            int posting = 0;
+            for (int row = 0; row < rowCount; row++) {
+                postingStarts[row] = posting;
+                final int first = posting;
+
+                for (int i = starts[row]; i < starts[row + 1]; i++) {
+                    final int source = order[i];
+                    if (denseOffsets[row] != NOT_DENSE) {
+                        layoutValues[denseOffsets[row] + postingColumns[source]] = values[source];
+                    } else {
+                        int j = posting++;
+                        while (j > first && layoutColumns[j - 1] > postingColumns[source]) {
+                            layoutColumns[j] = layoutColumns[j - 1];
+                            layoutValues[postingBase + j] = layoutValues[postingBase + j - 1];
+                            j--;
+                        }
+
+                        layoutColumns[j] = postingColumns[source];
+                        layoutValues[postingBase + j] = values[source];
+                    }
+                }
+            }
+            postingStarts[rowCount] = posting;
+
+            return new DoubleMatrix(columns, denseOffsets, postingStarts, layoutColumns,
+                    DoubleBuffer.wrap(layoutValues));
+        }
+    }
+
+    /**
+     * Reads values from a possibly memory mapped buffer. Values of mapped buffers are never copied to the heap:
+     * dense rows are read from the buffer and log-likelihoods are computed while scoring.
+     */
+    private static final class DoubleMatrix extends ProbabilityMatrix {
+        private final DoubleBuffer values;
+
+        /**
+         * Array backing the buffer, {@code null} if the buffer is not backed by an array
+         */
+        private final double[] dense;
+
+        DoubleMatrix(final int columns, final int[] denseOffsets, final int[] postingStarts,
+                     final short[] postingColumns, final DoubleBuffer values) {
+            super(columns, denseOffsets, postingStarts, postingColumns,
+                    values.capacity() - postingColumns.length);
+            this.values = values;
+            dense = (values.hasArray() && values.arrayOffset() == 0) ? values.array() : null;
+        }
+
+        DoubleMatrix(final ProbabilityMatrix source) {
+            super(source);
+
+            final double[] data = new double[source.valueCount()];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = source.value(i);
+            }
+            values = DoubleBuffer.wrap(data);
+            dense = data;
+        }
+
+        @Override
+        double value(final int index) {
+            return values.get(index);
+        }
+
+        @Override
+        double denseValue(final int index) {
+            return (dense != null) ? dense[index] : values.get(index);
+        }
+
+        @Override
+        void update(final double[] prob, final int row, final double weight, final ProbabilityKernel kernel) {
+            final double scale = 1 / weight;
+            final int offset = denseOffsets[row];
+
+            if (offset == NOT_DENSE) {
+                for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                    prob[postingColumns[i]] *= 1 + values.get(postingBase + i) * scale;
+                }
+            } else if (dense != null) {
+                kernel.update(prob, dense, offset, scale);
+            } else {
+                kernel.update(prob, values, offset, scale);
+            }
+        }
+
+        @Override
+        long valueMemoryUsage() {
+            return (long) values.capacity() * Double.BYTES;
+        }
+
+        @Override
+        LogScorer createLogScorer(final double weight) {
+            if (dense == null) {
+                return computeLogScorer(weight);
+            }
+
+            final double[] table = new double[values.capacity()];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = Math.log1p(values.get(i) / weight);
+            }
+
+            return (scores, row, count, kernel) -> {
+                final int offset = denseOffsets[row];
+                if (offset != NOT_DENSE) {
+                    kernel.accumulate(scores, table, offset, count);
+                } else {
+                    for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                        scores[postingColumns[i]] += count * table[postingBase + i];
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class FloatMatrix extends ProbabilityMatrix {
+        private final float[] values;
+
+        FloatMatrix(final ProbabilityMatrix source) {
+            super(source);
+
+            values = new float[source.valueCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (float) source.value(i);
+            }
+        }
+
+        @Override
+        double value(final int index) {
+            return values[index];
+        }
+
+        @Override
+        void update(final double[] prob, final int row, final double weight, final ProbabilityKernel kernel) {
+            final double scale = 1 / weight;
+            final int offset = denseOffsets[row];
+
+            if (offset != NOT_DENSE) {
+                kernel.update(prob, values, offset, scale);
+            } else {
+                for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                    prob[postingColumns[i]] *= 1 + values[postingBase + i] * scale;
+                }
+            }
+        }
+
+        @Override
+        long valueMemoryUsage() {
+            return (long) values.length * Float.BYTES;
+        }
+
+        @Override
+        LogScorer createLogScorer(final double weight) {
+            final float[] table = new float[values.length];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (float) Math.log1p(values[i] / weight);
+            }
+
+            return (scores, row, count, kernel) -> {
+                final int offset = denseOffsets[row];
+                if (offset != NOT_DENSE) {
+                    kernel.accumulate(scores, table, offset, count);
+                } else {
+                    for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                        scores[postingColumns[i]] += count * table[postingBase + i];
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Stores logarithms of non-zero probabilities quantized to equally spaced levels between the smallest and
+     * the largest one, level {@code 0} stands for zero probability. Both probability and log-likelihood lookups
+     * go through small per-level tables.
+     */
+    private static final class QuantizedMatrix extends ProbabilityMatrix {
+        private final byte[] bytes;
+        private final short[] shorts;
+        private final double[] levels;
+
+        QuantizedMatrix(final ProbabilityMatrix source, final int levelCount) {
+            super(source);
+
+            final int size = source.valueCount();
+            double minLog = Double.POSITIVE_INFINITY;
+            double maxLog = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                final double p = source.value(i);
+                if (p > 0) {
+                    final double log = Math.log(p);
+                    minLog = Math.min(minLog, log);
+                    maxLog = Math.max(maxLog, log);
+                }
+            }
+
+            if (minLog > maxLog) {
+                minLog = 0;
+                maxLog = 0;
+            }
+
+            final double step = (maxLog > minLog) ? (maxLog - minLog) / (levelCount - 1) : 1;
+            levels = new double[levelCount + 1];
+            for (int level = 1; level <= levelCount; level++) {
+                levels[level] = Math.exp(minLog + (level - 1) * step);
+            }
+
+            final boolean narrow = levelCount <= (1 << Byte.SIZE) - 1;
+            bytes = narrow ? new byte[size] : null;
+            shorts = narrow ? null : new short[size];
+
+            for (int i = 0; i < size; i++) {
+                final double p = source.value(i);
+                final int level = (p > 0) ? 1 + (int) Math.round((Math.log(p) - minLog) / step) : 0;
+
+                if (narrow) {
+                    bytes[i] = (byte) level;
+                } else {
+                    shorts[i] = (short) level;
+                }
+            }
+        }
+
+        private int level(final int index) {
+            return (bytes != null) ? (bytes[index] & 0xFF) : (shorts[index] & 0xFFFF);
+        }
+
+        @Override
+        double value(final int index) {
+            return levels[level(index)];
+        }
+
+        @Override
+        void update(final double[] prob, final int row, final double weight, final ProbabilityKernel kernel) {
+            final double scale = 1 / weight;
+            final int offset = denseOffsets[row];
+
+            if (offset != NOT_DENSE) {
+                for (int i = 0; i < prob.length; i++) {
+                    prob[i] *= 1 + levels[level(offset + i)] * scale;
+                }
+            } else {
+                for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                    prob[postingColumns[i]] *= 1 + levels[level(postingBase + i)] * scale;
+                }
+            }
+        }
+
+        @Override
+        long valueMemoryUsage() {
+            final long data = (bytes != null) ? bytes.length : (long) shorts.length * Short.BYTES;
+            return data + (long) levels.length * Double.BYTES;
+        }
+
+        @Override
+        LogScorer createLogScorer(final double weight) {
+            final double[] table = new double[levels.length];
+            for (int level = 0; level < table.length; level++) {
+                table[level] = Math.log1p(levels[level] / weight);
+            }
+
+            return (scores, row, count, kernel) -> {
+                final int offset = denseOffsets[row];
+                if (offset != NOT_DENSE) {
+                    for (int i = 0; i < scores.length; i++) {
+                        scores[i] += count * table[level(offset + i)];
+                    }
+                } else {
+                    for (int i = postingStarts[row]; i < postingStarts[row + 1]; i++) {
+                        scores[postingColumns[i]] += count * table[level(postingBase + i)];
+                    }
+                }
+            };
+        }
+    }
+}
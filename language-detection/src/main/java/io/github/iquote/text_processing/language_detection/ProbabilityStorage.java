@@ -0,0 +1,45 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Storage mode of the n-gram probability matrix held by {@link DetectorFactory}. Smaller modes trade
+ * detection accuracy for memory, see {@code StorageAccuracyReportTest} for the accuracy on the test corpora.
+ *
+ * @author Konstantin Gusarov
+ */
+public enum ProbabilityStorage {
+    /**
+     * 64-bit probabilities, compiled profiles are used directly from the memory mapped file
+     */
+    DOUBLE,
+
+    /**
+     * 32-bit probabilities
+     */
+    FLOAT,
+
+    /**
+     * Log-probabilities quantized to 65535 levels
+     */
+    QUANTIZED_16,
+
+    /**
+     * Log-probabilities quantized to 255 levels
+     */
+    QUANTIZED_8
+}
@@ -0,0 +1,465 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.iquote.text_processing.language_detection.langdetect.LangProfileDocument;
+import io.github.iquote.text_processing.language_detection.util.LangProfile;
+import io.github.iquote.text_processing.language_detection.util.NGramDictionary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>Compiles JSON language profiles into a single binary file which can be memory mapped by
+ * {@link DetectorFactory#DetectorFactory(Path)}, so no parsing or probability computation happens
+ * at startup and profile data lives off the Java heap.</p>
+ * <p>File layout (big-endian):</p>
+ * <ul>
+ *  <li>header: magic, format version, language count, n-gram count, probability value count, posting count
+ *      and CRC32C checksum of the rest of the file</li>
+ *  <li>language names: length-prefixed UTF-8 strings, padded to 8 bytes</li>
+ *  <li>n-gram keys (see {@link io.github.iquote.text_processing.language_detection.util.NGram#pack(CharSequence)})
+ *      sorted ascending</li>
+ *  <li>probabilities: dense rows followed by posting values</li>
+ *  <li>dense row offsets ({@code -1} for rows stored as postings) and posting range starts of every row,
+ *      language columns of all postings padded to 8 bytes, see {@link ProbabilityMatrix}</li>
+ * </ul>
+ * <p>The build compiles {@code sm} and {@code nr} profile sets by running {@code main} with the profile root
+ * directory and set names as arguments, see {@link #compileAll(Path, List)}.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+public class ProfileCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileCompiler.class);
+
+    static final int MAGIC = 0x4C445046;
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int CHECKSUM_OFFSET = 24;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int ALIGNMENT = Long.BYTES;
+    private static final String PROFILE_EXTENSION = ".json";
+    private static final String COMPILED_EXTENSION = ".bin";
+
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ProfileCompiler <profile root directory> <profile set>...");
+        }
+
+        compileAll(Paths.get(args[0]), Arrays.asList(args).subList(1, args.length));
+    }
+
+    /**
+     * Compile every profile set, i.e. a {@code <set>} subdirectory of JSON profiles, into {@code <set>.bin}
+     * and write {@value ProfileIndex#FILE_NAME} listing both JSON and compiled profiles into the root directory.
+     * {@link DetectorFactory#DetectorFactory(Path, boolean)} can load profiles from the root directory afterwards.
+     *
+     * @param root                      Profile root directory
+     * @param sets                      Profile set names
+     * @throws LangDetectException      In case profiles can't be read or output can't be written
+     */
+    public static void compileAll(final Path root, final List<String> sets) {
+        final List<ProfileIndex.Entry> entries = new ArrayList<>();
+
+        for (final String set : sets) {
+            final DetectorFactory factory = readProfiles(root.resolve(set), set, entries);
+            final String compiled = set + COMPILED_EXTENSION;
+            final ByteBuffer buffer = write(factory);
+
+            writeCompiled(buffer, root.resolve(compiled));
+            entries.add(new ProfileIndex.Entry(set, null, compiled, factory.dictionary.size(),
+                    buffer.getLong(CHECKSUM_OFFSET)));
+        }
+
+        try (final Writer writer = Files.newBufferedWriter(root.resolve(ProfileIndex.FILE_NAME),
+                StandardCharsets.UTF_8)) {
+            new ProfileIndex(entries).write(writer);
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to write profile index", e);
+        }
+
+        LOGGER.info("Indexed {} profile sets in {}", sets.size(), root);
+    }
+
+    /**
+     * Compile all JSON language profiles of the given directory into a binary profile file
+     *
+     * @param profileDirectory          Directory holding {@code *.json} language profiles
+     * @param output                    Compiled profile file to be written
+     * @throws LangDetectException      In case profiles can't be read or output can't be written
+     */
+    public static void compile(final Path profileDirectory, final Path output) {
+        final DetectorFactory factory = readProfiles(profileDirectory);
+        writeCompiled(write(factory), output);
+
+        LOGGER.info("Compiled {} language profiles with {} n-grams into {}",
+                factory.languages.size(), factory.dictionary.size(), output);
+    }
+
+    private static void writeCompiled(final ByteBuffer buffer, final Path output) {
+        try (final FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to write compiled profiles", e);
+        }
+    }
+
+    /**
+     * Read all JSON language profiles of the given directory ordered by file name
+     *
+     * @param profileDirectory          Directory holding {@code *.json} language profiles
+     * @return                          Factory holding all the profiles
+     * @throws LangDetectException      In case profiles can't be read
+     */
+    static DetectorFactory readProfiles(final Path profileDirectory) {
+        return readProfiles(profileDirectory, profileDirectory.getFileName().toString(), new ArrayList<>());
+    }
+
+    private static DetectorFactory readProfiles(final Path profileDirectory, final String set,
+                                                final List<ProfileIndex.Entry> entries) {
+        final List<Path> profiles;
+        try (final Stream<Path> files = Files.list(profileDirectory)) {
+            profiles = files.filter(p -> p.getFileName().toString().endsWith(PROFILE_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to list language profiles", e);
+        }
+
+        final DetectorFactory factory = new DetectorFactory();
+        final int languageCount = profiles.size();
+
+        for (int i = 0; i < languageCount; i++) {
+            final Path file = profiles.get(i);
+
+            try {
+                final byte[] data = Files.readAllBytes(file);
+                final LangProfile profile = parseProfile(data);
+                factory.addProfile(profile, i, languageCount);
+
+                entries.add(new ProfileIndex.Entry(set, profile.getName(), set + '/' + file.getFileName(),
+                        profile.getFrequencies().size(), checksum(data)));
+            } catch (final IOException e) {
+                throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to read language profile", e);
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Parse JSON language profile
+     *
+     * @param data              JSON profile contents
+     * @return                  Language profile
+     * @throws IOException      In case profile is not a valid JSON profile
+     */
+    static LangProfile parseProfile(final byte[] data) throws IOException {
+        final LangProfileDocument lpd = MAPPER.readValue(data, LangProfileDocument.class);
+        return new LangProfile(lpd);
+    }
+
+    /**
+     * Compute CRC32C checksum of the given data
+     *
+     * @param data      Data to compute checksum of
+     * @return          Checksum value
+     */
+    static long checksum(final byte[] data) {
+        final CRC32C checksum = new CRC32C();
+        checksum.update(data);
+        return checksum.getValue();
+    }
+
+    /**
+     * Serialize profiles of the given factory into the compiled binary format
+     *
+     * @param factory       Factory holding language profiles
+     * @return              Buffer holding the whole compiled file
+     */
+    static ByteBuffer write(final DetectorFactory factory) {
+        final NGramDictionary dictionary = factory.dictionary;
+        final int languageCount = factory.languageCount;
+        final int rowCount = dictionary.size();
+        final int[] rows = IntStream.range(0, rowCount)
+                .boxed()
+                .sorted(Comparator.comparingLong(dictionary::keyAt))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        final ProbabilityMatrix.Builder builder = new ProbabilityMatrix.Builder(languageCount);
+        for (int i = 0; i < rowCount; i++) {
+            final int row = i;
+            factory.matrix.forEach(rows[i], (column, p) -> builder.add(row, column, p));
+        }
+        final ProbabilityMatrix matrix = builder.build(rowCount);
+        final int valueCount = matrix.valueCount();
+        final int postingCount = matrix.postingColumns.length;
+
+        final List<byte[]> names = factory.languages.stream()
+                .map(s -> s.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+        final int namesSize = align(names.stream().mapToInt(n -> Short.BYTES + n.length).sum());
+        final long size = HEADER_SIZE + namesSize + bodySize(rowCount, valueCount, postingCount);
+
+        if (size > Integer.MAX_VALUE) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Compiled profiles are too large: " + size + " bytes");
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.BIG_ENDIAN);
+        buffer.position(HEADER_SIZE);
+
+        for (final byte[] name : names) {
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        buffer.position(HEADER_SIZE + namesSize);
+
+        for (final int row : rows) {
+            buffer.putLong(dictionary.keyAt(row));
+        }
+        for (int i = 0; i < valueCount; i++) {
+            buffer.putDouble(matrix.value(i));
+        }
+        for (final int offset : matrix.denseOffsets) {
+            buffer.putInt(offset);
+        }
+        for (final int start : matrix.postingStarts) {
+            buffer.putInt(start);
+        }
+        for (final short column : matrix.postingColumns) {
+            buffer.putShort(column);
+        }
+
+        final CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate().position(HEADER_SIZE));
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, languageCount);
+        buffer.putInt(12, rowCount);
+        buffer.putInt(16, valueCount);
+        buffer.putInt(20, postingCount);
+        buffer.putLong(CHECKSUM_OFFSET, checksum.getValue());
+
+        return buffer.rewind();
+    }
+
+    /**
+     * Load compiled profiles into the given empty factory. N-gram probabilities are used directly from
+     * the buffer, so mapped or direct buffers keep them off the Java heap.
+     *
+     * @param source                    Buffer holding the whole compiled file
+     * @param factory                   Factory without language profiles
+     * @return                          Checksum of the compiled profile body
+     * @throws LangDetectException      In case buffer is not a valid compiled profile file
+     */
+    static long load(final ByteBuffer source, final DetectorFactory factory) {
+        final ByteBuffer buffer = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Not a compiled language profile file");
+        }
+
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Unsupported compiled profile version: " + version);
+        }
+
+        final int languageCount = buffer.getInt();
+        final int rowCount = buffer.getInt();
+        final int valueCount = buffer.getInt();
+        final int postingCount = buffer.getInt();
+        final long expectedChecksum = buffer.getLong();
+
+        final CRC32C checksum = new CRC32C();
+        checksum.update(buffer.duplicate());
+        if (checksum.getValue() != expectedChecksum) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Compiled language profile checksum mismatch");
+        }
+
+        final ByteBuffer body = buffer.slice();
+        for (int i = 0; i < languageCount; i++) {
+            final byte[] name = new byte[body.getShort()];
+            body.get(name);
+
+            final String language = new String(name, StandardCharsets.UTF_8);
+            if (factory.languages.contains(language)) {
+                throw new LangDetectException(ErrorCode.DUPLICATE_LANGUAGE,
+                        language + " language profile is already defined");
+            }
+            factory.languages.add(language);
+        }
+        body.position(align(body.position()));
+
+        if (rowCount < 0 || postingCount < 0 || valueCount < postingCount
+                || body.remaining() != bodySize(rowCount, valueCount, postingCount)) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Compiled language profile size mismatch");
+        }
+
+        final LongBuffer keys = body.slice().asLongBuffer();
+        long previous = Long.MIN_VALUE;
+        for (int row = 0; row < rowCount; row++) {
+            final long key = keys.get(row);
+            if (row > 0 && key <= previous) {
+                throw new LangDetectException(ErrorCode.FORMAT, "Compiled n-gram keys are not sorted");
+            }
+
+            factory.dictionary.add(key);
+            previous = key;
+        }
+        body.position(body.position() + rowCount * Long.BYTES);
+
+        final DoubleBuffer values = body.slice().limit(valueCount * Double.BYTES).asDoubleBuffer();
+        body.position(body.position() + valueCount * Double.BYTES);
+
+        final int[] denseOffsets = new int[rowCount];
+        final int[] postingStarts = new int[rowCount + 1];
+        final short[] postingColumns = new short[postingCount];
+        body.asIntBuffer().get(denseOffsets);
+        body.position(body.position() + denseOffsets.length * Integer.BYTES);
+        body.asIntBuffer().get(postingStarts);
+        body.position(body.position() + postingStarts.length * Integer.BYTES);
+        body.asShortBuffer().get(postingColumns);
+
+        verifyLayout(languageCount, valueCount - postingCount, denseOffsets, postingStarts, postingColumns);
+
+        factory.languageCount = languageCount;
+        factory.matrix = ProbabilityMatrix.of(languageCount, denseOffsets, postingStarts, postingColumns, values);
+
+        return expectedChecksum;
+    }
+
+    private static long bodySize(final int rowCount, final int valueCount, final int postingCount) {
+        return (long) rowCount * Long.BYTES + (long) valueCount * Double.BYTES
+                + (2L * rowCount + 1) * Integer.BYTES + align((long) postingCount * Short.BYTES);
+    }
+
+    private static void verifyLayout(final int languageCount, final int denseSize, final int[] denseOffsets,
+                                     final int[] postingStarts, final short[] postingColumns) {
+        for (final int offset : denseOffsets) {
+            if (offset != -1 && (offset < 0 || offset % languageCount != 0 || offset + languageCount > denseSize)) {
+                throw new LangDetectException(ErrorCode.FORMAT, "Invalid compiled dense row offset: " + offset);
+            }
+        }
+
+        for (int row = 0; row < denseOffsets.length; row++) {
+            if (postingStarts[row] < 0 || postingStarts[row] > postingStarts[row + 1]) {
+                throw new LangDetectException(ErrorCode.FORMAT, "Invalid compiled posting range of row " + row);
+            }
+        }
+
+        if (postingStarts[0] != 0 || postingStarts[denseOffsets.length] != postingColumns.length) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Compiled posting count mismatch");
+        }
+
+        for (final short column : postingColumns) {
+            if (column < 0 || column >= languageCount) {
+                throw new LangDetectException(ErrorCode.FORMAT, "Invalid compiled posting column: " + column);
+            }
+        }
+    }
+
+    /**
+     * Get compiled profile file contents, files are memory mapped while other resources
+     * (i.e. packed in a jar) are read into a direct buffer
+     *
+     * @param resource                  Compiled profile resource
+     * @return                          Buffer holding the whole compiled file
+     * @throws IOException              In case resource can't be read
+     */
+    static ByteBuffer open(final URL resource) throws IOException {
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return map(Paths.get(resource.toURI()));
+            } catch (final URISyntaxException e) {
+                throw new IOException("Invalid resource location: " + resource, e);
+            }
+        }
+
+        final URLConnection connection = resource.openConnection();
+        final long length = connection.getContentLengthLong();
+
+        try (final InputStream is = connection.getInputStream()) {
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                final byte[] data = is.readAllBytes();
+                return ByteBuffer.allocateDirect(data.length).put(data).flip();
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+            final ReadableByteChannel channel = Channels.newChannel(is);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read whole resource
+            }
+
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Memory map compiled profile file
+     *
+     * @param file                      Compiled profile file
+     * @return                          Read-only buffer mapping the whole file
+     * @throws IOException              In case file can't be mapped
+     */
+    static ByteBuffer map(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int align(final int position) {
+        return (position + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static long align(final long position) {
+        return (position + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
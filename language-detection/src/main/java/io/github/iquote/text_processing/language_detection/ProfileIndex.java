@@ -0,0 +1,173 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * <p>Index of language profiles generated by {@link ProfileCompiler} at build time, so profiles are found
+ * without scanning the classpath. Index is a UTF-8 text file named {@value #FILE_NAME}, one entry per line:</p>
+ * <pre>
+ * profile  &lt;set&gt; &lt;language&gt; &lt;path&gt; &lt;n-gram count&gt; &lt;checksum&gt;
+ * compiled &lt;set&gt; &lt;path&gt; &lt;n-gram count&gt; &lt;checksum&gt;
+ * </pre>
+ * <p>Fields are separated by whitespace. Paths are relative to the index location, checksums are hexadecimal
+ * CRC32C values of the JSON profile file or of the compiled profile body. Empty lines and lines starting
+ * with {@code #} are ignored.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+final class ProfileIndex {
+    static final String FILE_NAME = "profiles.idx";
+
+    private static final String PROFILE = "profile";
+    private static final String COMPILED = "compiled";
+    private static final Pattern SEPARATOR = Pattern.compile("\\s+");
+
+    private final List<Entry> entries;
+
+    ProfileIndex(final List<Entry> entries) {
+        this.entries = unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Parse profile index
+     *
+     * @param reader                    Index source
+     * @return                          Parsed index
+     * @throws IOException              In case index can't be read
+     * @throws LangDetectException      In case index contains malformed entries
+     */
+    static ProfileIndex read(final Reader reader) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        final BufferedReader br = new BufferedReader(reader);
+
+        String line;
+        while ((line = br.readLine()) != null) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                continue;
+            }
+
+            entries.add(parseEntry(trimmed));
+        }
+
+        return new ProfileIndex(entries);
+    }
+
+    private static Entry parseEntry(final String line) {
+        final String[] fields = SEPARATOR.split(line);
+
+        try {
+            if (PROFILE.equals(fields[0]) && fields.length == 6) {
+                return new Entry(fields[1], fields[2], fields[3],
+                        Integer.parseInt(fields[4]), Long.parseLong(fields[5], 16));
+            }
+
+            if (COMPILED.equals(fields[0]) && fields.length == 5) {
+                return new Entry(fields[1], null, fields[2],
+                        Integer.parseInt(fields[3]), Long.parseLong(fields[4], 16));
+            }
+        } catch (final NumberFormatException e) {
+            throw new LangDetectException(ErrorCode.FORMAT, "Malformed profile index entry: " + line, e);
+        }
+
+        throw new LangDetectException(ErrorCode.FORMAT, "Malformed profile index entry: " + line);
+    }
+
+    /**
+     * Write profile index
+     *
+     * @param writer            Index destination
+     * @throws IOException      In case index can't be written
+     */
+    void write(final Writer writer) throws IOException {
+        writer.write("# Generated by ProfileCompiler\n");
+
+        for (final Entry entry : entries) {
+            if (entry.isCompiled()) {
+                writer.write(String.format("%s %s %s %d %08x%n", COMPILED, entry.set, entry.path,
+                        entry.nGramCount, entry.checksum));
+            } else {
+                writer.write(String.format("%s %s %s %s %d %08x%n", PROFILE, entry.set, entry.language, entry.path,
+                        entry.nGramCount, entry.checksum));
+            }
+        }
+    }
+
+    /**
+     * Get JSON profile entries of the given profile set in index order
+     *
+     * @param set       Profile set name, i.e. {@code sm} or {@code nr}
+     * @return          Profile entries
+     */
+    List<Entry> getProfiles(final String set) {
+        return entries.stream()
+                .filter(e -> !e.isCompiled() && e.set.equals(set))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get compiled profile entry of the given profile set
+     *
+     * @param set       Profile set name, i.e. {@code sm} or {@code nr}
+     * @return          Compiled profile entry or {@code null} if profile set wasn't compiled
+     */
+    Entry getCompiled(final String set) {
+        return entries.stream()
+                .filter(e -> e.isCompiled() && e.set.equals(set))
+                .findFirst()
+                .orElse(null);
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Single profile index entry
+     */
+    static final class Entry {
+        final String set;
+        final String language;
+        final String path;
+        final int nGramCount;
+        final long checksum;
+
+        Entry(final String set, final String language, final String path, final int nGramCount,
+              final long checksum) {
+            this.set = set;
+            this.language = language;
+            this.path = path;
+            this.nGramCount = nGramCount;
+            this.checksum = checksum;
+        }
+
+        boolean isCompiled() {
+            return language == null;
+        }
+    }
+}
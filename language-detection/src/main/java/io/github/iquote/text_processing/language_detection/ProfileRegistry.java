@@ -0,0 +1,116 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Process-wide registry of language profiles. Every profile set is loaded at most once per JVM and
+ * its profile data is shared by all callers. Every call returns a new lightweight {@link DetectorFactory}
+ * over the shared data, so settings such as cache, trial policy or content gate set by one caller don't
+ * affect the others. Returned factories hold nothing but references to the shared data and their settings,
+ * so they are cheap to create and are garbage collected as soon as callers drop them.</p>
+ * <p>Factories restricted to a subset of languages are views of the shared profile data: they reuse its n-gram
+ * dictionary and hold probabilities of the selected languages only, which are shared by all callers
+ * requesting the same subset. Up to {@value #MAX_VIEWS} most recently requested subsets are kept,
+ * views of other subsets are rebuilt on request.</p>
+ * <pre>
+ * final DetectorFactory factory = ProfileRegistry.getFactory(true, Arrays.asList("eng", "deu", "fra"));
+ * final String lang = factory.detect(text);
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class ProfileRegistry {
+    @VisibleForTesting
+    static final int MAX_VIEWS = 32;
+
+    private static final ConcurrentMap<Boolean, DetectorFactory> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<String, DetectorFactory> VIEWS =
+            new LinkedHashMap<String, DetectorFactory>(MAX_VIEWS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, DetectorFactory> eldest) {
+                    return size() > MAX_VIEWS;
+                }
+            };
+
+    private ProfileRegistry() {
+        // Utility class
+    }
+
+    /**
+     * Get factory holding all language profiles of the set
+     *
+     * @param shortMessages             Should factory use short message profiles
+     * @return                          New detector factory sharing profile data with other callers
+     * @throws LangDetectException      In case language profiles weren't read for some reason
+     */
+    public static DetectorFactory getFactory(final boolean shortMessages) {
+        return new DetectorFactory(getProfiles(shortMessages));
+    }
+
+    /**
+     * Get factory detecting only the given languages
+     *
+     * @param shortMessages             Should factory use short message profiles
+     * @param languages                 Languages to be detected
+     * @return                          New detector factory sharing profile data of the subset with other callers
+     * @throws LangDetectException      In case language profiles weren't read for some reason, languages are empty
+     *                                  or contain languages without profiles
+     */
+    public static DetectorFactory getFactory(final boolean shortMessages, final Collection<String> languages) {
+        final TreeSet<String> subset = new TreeSet<>(languages);
+        final String key = (shortMessages ? "sm:" : "nr:") + String.join(",", subset);
+
+        DetectorFactory view;
+        synchronized (VIEWS) {
+            view = VIEWS.get(key);
+        }
+
+        if (view == null) {
+            // View is built outside of the lock, so slow subsets don't block lookups of the others
+            final DetectorFactory created = new DetectorFactory(getProfiles(shortMessages), subset);
+            synchronized (VIEWS) {
+                view = VIEWS.putIfAbsent(key, created);
+            }
+
+            if (view == null) {
+                view = created;
+            }
+        }
+
+        return new DetectorFactory(view);
+    }
+
+    @VisibleForTesting
+    static int getViewCount() {
+        synchronized (VIEWS) {
+            return VIEWS.size();
+        }
+    }
+
+    private static DetectorFactory getProfiles(final boolean shortMessages) {
+        return FACTORIES.computeIfAbsent(shortMessages, DetectorFactory::new);
+    }
+}
@@ -0,0 +1,399 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.iquote.text_processing.language_detection.langdetect.LangProfileDocument;
+import io.github.iquote.text_processing.language_detection.util.LangProfile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static io.github.iquote.text_processing.language_detection.LanguageProfileGenerator.READ_BUFFER_SIZE;
+
+/**
+ * <p>Trains profiles of many languages concurrently from a corpus directory. Every subdirectory of the corpus
+ * holds training data of the language it is named after:</p>
+ * <ul>
+ *  <li>{@code *.txt} and {@code *.txt.gz} - UTF-8 text, every line is processed separately</li>
+ *  <li>{@code *.xml} and {@code *.xml.gz} - Wikipedia abstract database dumps</li>
+ * </ul>
+ * <p>Uncompressed text files are split into chunks at line boundaries which are memory mapped, other files are
+ * read as a whole through large buffers. Chunks and files are processed by worker threads, every worker counts
+ * n-grams into its own profiles which are merged once all data is read. Trained profiles are the same as the ones
+ * {@link LanguageProfileGenerator} produces from the whole data, with less frequent n-grams omitted.</p>
+ * <pre>
+ * // Writes profiles/nr/*.json and compiles them into profiles/nr.bin
+ * new ProfileTrainer().train(Paths.get("corpus"), Paths.get("profiles", "nr"));
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public class ProfileTrainer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileTrainer.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String TEXT_EXTENSION = ".txt";
+    private static final String XML_EXTENSION = ".xml";
+    private static final String PROFILE_EXTENSION = ".json";
+    private static final String COMPILED_EXTENSION = ".bin";
+
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * Create trainer using a worker thread per available processor
+     */
+    public ProfileTrainer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create trainer using the given amount of worker threads
+     *
+     * @param threads                   Amount of worker threads
+     * @throws LangDetectException      In case amount of threads is not positive
+     */
+    public ProfileTrainer(final int threads) {
+        this(threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param threads                   Amount of worker threads
+     * @param chunkSize                 Approximate size of text file chunks in bytes
+     */
+    ProfileTrainer(final int threads, final int chunkSize) {
+        if ((threads <= 0) || (chunkSize <= 0)) {
+            throw new LangDetectException(ErrorCode.INIT_PARAM, "Amount of threads and chunk size must be positive");
+        }
+
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ProfileTrainer <corpus directory> <profile directory> [threads]");
+        }
+
+        final ProfileTrainer trainer = (args.length > 2) ? new ProfileTrainer(Integer.parseInt(args[2]))
+                : new ProfileTrainer();
+        trainer.train(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /**
+     * Train profiles of all languages of the corpus, write them as JSON profiles into the given directory and
+     * compile them into a {@code .bin} file next to it, see {@link ProfileCompiler#compile(Path, Path)}
+     *
+     * @param corpus                    Corpus directory
+     * @param profileDirectory          Directory JSON profiles are written into, it is created if necessary
+     * @throws LangDetectException      In case training data can't be read or profiles can't be written
+     */
+    public void train(final Path corpus, final Path profileDirectory) {
+        final List<LangProfileDocument> documents = train(corpus);
+
+        try {
+            Files.createDirectories(profileDirectory);
+            for (final LangProfileDocument document : documents) {
+                MAPPER.writeValue(profileDirectory.resolve(document.getName() + PROFILE_EXTENSION).toFile(), document);
+            }
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.FAILED_TO_INITIALIZE, "Failed to write language profiles", e);
+        }
+
+        ProfileCompiler.compile(profileDirectory,
+                profileDirectory.resolveSibling(profileDirectory.getFileName() + COMPILED_EXTENSION));
+    }
+
+    /**
+     * Train profiles of all languages of the corpus
+     *
+     * @param corpus                    Corpus directory
+     * @return                          Language profile documents ordered by language names
+     * @throws LangDetectException      In case training data can't be read
+     */
+    public List<LangProfileDocument> train(final Path corpus) {
+        final List<Chunk> chunks = split(corpus);
+        final Queue<Map<String, LangProfile>> partials = new ConcurrentLinkedQueue<>();
+        final ThreadLocal<Map<String, LangProfile>> local = ThreadLocal.withInitial(() -> {
+            final Map<String, LangProfile> profiles = new HashMap<>();
+            partials.add(profiles);
+            return profiles;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(chunks.size());
+            for (final Chunk chunk : chunks) {
+                futures.add(executor.submit(() -> chunk.read(local.get().computeIfAbsent(chunk.language,
+                        LangProfile::new))));
+            }
+
+            for (final Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final Map<String, LangProfile> profiles = new TreeMap<>();
+        for (final Map<String, LangProfile> partial : partials) {
+            partial.forEach((language, profile) -> profiles.computeIfAbsent(language, LangProfile::new).merge(profile));
+        }
+
+        LOGGER.info("Trained {} language profiles from {} chunks of {}", profiles.size(), chunks.size(), corpus);
+
+        final List<LangProfileDocument> documents = new ArrayList<>(profiles.size());
+        for (final LangProfile profile : profiles.values()) {
+            profile.omitLessFreq();
+            documents.add(profile.toDocument());
+        }
+
+        return documents;
+    }
+
+    private static void await(final Future<?> future) {
+        try {
+            future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Training was interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof LangDetectException) {
+                throw (LangDetectException) e.getCause();
+            }
+
+            throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Failed to read training data",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Split training data of all languages of the corpus into chunks
+     */
+    private List<Chunk> split(final Path corpus) {
+        final List<Chunk> chunks = new ArrayList<>();
+
+        try {
+            for (final Path directory : list(corpus)) {
+                if (!Files.isDirectory(directory)) {
+                    continue;
+                }
+
+                final String language = directory.getFileName().toString();
+                final int count = chunks.size();
+                for (final Path file : list(directory)) {
+                    split(language, file, chunks);
+                }
+
+                if (chunks.size() == count) {
+                    LOGGER.warn("No training data found for {}", language);
+                }
+            }
+        } catch (final IOException e) {
+            throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Cannot list training data", e);
+        }
+
+        return chunks;
+    }
+
+    private static List<Path> list(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void split(final String language, final Path file, final List<Chunk> chunks) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+
+        final String name = file.getFileName().toString();
+        final boolean gzip = name.endsWith(GZIP_EXTENSION);
+        final String baseName = gzip ? name.substring(0, name.length() - GZIP_EXTENSION.length()) : name;
+
+        if (baseName.endsWith(XML_EXTENSION)) {
+            chunks.add(new Chunk(language, file, true, gzip, 0, -1));
+        } else if (!baseName.endsWith(TEXT_EXTENSION)) {
+            LOGGER.debug("Skipping {}", file);
+        } else if (gzip) {
+            chunks.add(new Chunk(language, file, false, true, 0, -1));
+        } else {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+                final long size = channel.size();
+
+                for (long start = 0; start < size; ) {
+                    final long end = lineBoundary(channel, Math.min(size, start + chunkSize), scan);
+                    chunks.add(new Chunk(language, file, false, false, start, end));
+                    start = end;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find start of the line following the given position. UTF-8 multibyte sequences never contain
+     * {@code '\n'} bytes, so chunks split at line boundaries can be decoded independently.
+     */
+    private static long lineBoundary(final FileChannel channel, final long position, final ByteBuffer scan)
+            throws IOException {
+        final long size = channel.size();
+
+        for (long offset = position; offset < size; ) {
+            scan.clear();
+            final int read = channel.read(scan, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+
+            offset += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * Update language profile with every line of the text, lines are split the same way
+     * {@link BufferedReader#readLine()} does
+     */
+    private static void updateLines(final LangProfile profile, final CharBuffer text) {
+        final int length = text.length();
+
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = text.get(i);
+            if ((ch == '\n') || (ch == '\r')) {
+                profile.update(text.subSequence(lineStart, i).toString());
+
+                if ((ch == '\r') && (i + 1 < length) && (text.get(i + 1) == '\n')) {
+                    i++;
+                }
+
+                lineStart = i + 1;
+            }
+        }
+
+        if (lineStart < length) {
+            profile.update(text.subSequence(lineStart, length).toString());
+        }
+    }
+
+    /**
+     * Part of the training data processed by a single worker
+     */
+    private static final class Chunk {
+        private final String language;
+        private final Path file;
+        private final boolean xml;
+        private final boolean gzip;
+        private final long start;
+        private final long end;
+
+        /**
+         * @param language      Language of the training data
+         * @param file          Training data file
+         * @param xml           Is file a Wikipedia abstract database
+         * @param gzip          Is file compressed
+         * @param start         Start of the chunk
+         * @param end           End of the chunk, {@code -1} if the whole file is read as a stream
+         */
+        private Chunk(final String language, final Path file, final boolean xml, final boolean gzip,
+                      final long start, final long end) {
+            this.language = language;
+            this.file = file;
+            this.xml = xml;
+            this.gzip = gzip;
+            this.start = start;
+            this.end = end;
+        }
+
+        private void read(final LangProfile profile) {
+            try {
+                if (end >= 0) {
+                    readMapped(profile);
+                } else {
+                    readStream(profile);
+                }
+            } catch (final IOException e) {
+                throw new LangDetectException(ErrorCode.CANNOT_OPEN_TRAIN_DATA, "Cannot read training data " + file,
+                        e);
+            }
+        }
+
+        private void readMapped(final LangProfile profile) throws IOException {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                updateLines(profile, StandardCharsets.UTF_8.decode(buffer));
+            }
+        }
+
+        @SuppressWarnings("resource")
+        private void readStream(final LangProfile profile) throws IOException {
+            try (
+                    final InputStream is = Files.newInputStream(file);
+                    final InputStream s = gzip ? new GZIPInputStream(is, READ_BUFFER_SIZE) : is;
+                    final InputStreamReader isr = new InputStreamReader(s, StandardCharsets.UTF_8);
+                    final BufferedReader br = new BufferedReader(isr, READ_BUFFER_SIZE)
+            ) {
+                if (xml) {
+                    LanguageProfileGenerator.readWikipediaAbstract(profile, br);
+                } else {
+                    LanguageProfileGenerator.readText(profile, br);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Receiver of language detection results. Used instead of {@link Language} lists when results
+ * should be consumed without allocating intermediate objects.
+ *
+ * @author Konstantin Gusarov
+ * @see Detector#getProbabilities(ResultSink)
+ * @see DetectorFactory#detectProbabilities(CharSequence, ResultSink)
+ */
+@FunctionalInterface
+public interface ResultSink {
+    /**
+     * Accept single language candidate. Candidates are passed ordered by probabilities descendently.
+     *
+     * @param code              Language code
+     * @param probability       Language probability
+     */
+    void accept(String code, double probability);
+}
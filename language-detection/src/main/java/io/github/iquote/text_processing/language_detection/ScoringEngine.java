@@ -0,0 +1,40 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Algorithm {@link Detector} uses to turn extracted n-grams into language probabilities
+ *
+ * @author Konstantin Gusarov
+ * @see Detector#setScoringEngine(ScoringEngine)
+ */
+public enum ScoringEngine {
+    /**
+     * Original algorithm: several trials, each of them updating language probabilities with randomly
+     * sampled n-grams until the top probability converges or iteration limit is reached.
+     * Results may slightly differ between runs.
+     */
+    SAMPLING,
+
+    /**
+     * Deterministic algorithm: n-grams of the text are aggregated into a histogram and summed
+     * log-probability of every language is computed in a single pass over distinct n-grams.
+     * Results are reproducible and latency depends only on the text length.
+     */
+    EXHAUSTIVE,
+    ;
+}
@@ -0,0 +1,138 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import io.github.iquote.text_processing.language_detection.util.CharacterTable;
+import io.github.iquote.text_processing.language_detection.util.NGram;
+import io.github.iquote.text_processing.language_detection.util.NGramDictionary;
+
+import java.lang.Character.UnicodeScript;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Maps scripts to the languages writing in them, so texts dominated by a single script are scored against
+ * those languages only. Text written in a script owned by a single language (i.e. Hangul, Thai or Greek) needs
+ * no scoring at all.</p>
+ * <p>Script owners are derived from the unigram probabilities of the language profiles: a language owns a script
+ * if at least {@value #OWNER_SHARE} of its unigram probability mass falls on the script characters. Language
+ * subset views get owners from their own languages only.</p>
+ *
+ * @author Konstantin Gusarov
+ */
+final class ScriptRouter {
+    /**
+     * Minimal share of unigram probability mass of a language written in a script to consider it a script owner
+     */
+    static final double OWNER_SHARE = 0.1;
+
+    /**
+     * Minimal share of script characters among all non-common characters of a text to route it by script
+     */
+    static final double DOMINANT_SHARE = 0.9;
+
+    private static final int COMMON = UnicodeScript.COMMON.ordinal();
+    private static final int INHERITED = UnicodeScript.INHERITED.ordinal();
+    private static final int UNKNOWN = UnicodeScript.UNKNOWN.ordinal();
+
+    /**
+     * Language columns owning every script, {@code null} for scripts not used by any language
+     */
+    private final int[][] owners = new int[CharacterTable.SCRIPT_COUNT][];
+
+    /**
+     * Build router for the profiles held by factory
+     *
+     * @param dictionary        N-Gram dictionary of the factory
+     * @param matrix            Probability matrix of the factory
+     * @param languageCount     Language count
+     */
+    ScriptRouter(final NGramDictionary dictionary, final ProbabilityMatrix matrix, final int languageCount) {
+        final double[][] mass = new double[CharacterTable.SCRIPT_COUNT][languageCount];
+        final double[] total = new double[languageCount];
+
+        for (int ch = Character.MIN_VALUE; ch <= Character.MAX_VALUE; ch++) {
+            final int row = dictionary.get(NGram.pack(String.valueOf((char) ch)));
+            if (row == NGramDictionary.NOT_FOUND) {
+                continue;
+            }
+
+            final double[] scriptMass = mass[CharacterTable.scriptId((char) ch)];
+            matrix.forEach(row, (column, p) -> {
+                scriptMass[column] += p;
+                total[column] += p;
+            });
+        }
+
+        for (int script = 0; script < owners.length; script++) {
+            if (script == COMMON || script == INHERITED || script == UNKNOWN) {
+                continue;
+            }
+
+            final double[] scriptMass = mass[script];
+            final int[] columns = IntStream.range(0, languageCount)
+                    .filter(i -> (total[i] > 0) && (scriptMass[i] >= OWNER_SHARE * total[i]))
+                    .toArray();
+
+            if (columns.length > 0) {
+                owners[script] = columns;
+            }
+        }
+    }
+
+    /**
+     * Get languages owning the script dominating the text
+     *
+     * @param scriptCounts      Character count of every script id in the text, see {@link CharacterTable#scriptId(char)}
+     * @return                  Language columns owning dominating script, {@code null} if no script dominates the
+     *                          text or dominating script isn't used by any language
+     */
+    int[] route(final int[] scriptCounts) {
+        int total = 0;
+        int dominant = -1;
+        int dominantCount = 0;
+
+        for (int script = 0; script < scriptCounts.length; script++) {
+            if (script == COMMON || script == INHERITED || script == UNKNOWN) {
+                continue;
+            }
+
+            final int count = scriptCounts[script];
+            total += count;
+            if (count > dominantCount) {
+                dominant = script;
+                dominantCount = count;
+            }
+        }
+
+        if ((dominant < 0) || (dominantCount < DOMINANT_SHARE * total)) {
+            return null;
+        }
+
+        return owners[dominant];
+    }
+
+    /**
+     * Get languages owning the script
+     *
+     * @param script            Script
+     * @return                  Language columns owning the script, empty if script isn't used by any language
+     */
+    int[] getOwners(final UnicodeScript script) {
+        final int[] columns = owners[script.ordinal()];
+        return (columns != null) ? columns.clone() : new int[0];
+    }
+}
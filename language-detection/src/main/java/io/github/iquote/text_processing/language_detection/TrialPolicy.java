@@ -0,0 +1,152 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * <p>Policy controlling how many trials the {@link ScoringEngine#SAMPLING} algorithm runs and how long each
+ * trial may take, see {@link Detector#setTrialPolicy(TrialPolicy)} and
+ * {@link DetectorFactory#setTrialPolicy(TrialPolicy)}.</p>
+ * <p>{@link #FIXED} policy runs 7 trials of up to 1000 iterations each. Adaptive policies stop launching trials
+ * once the top language of the mean of completed trials is the same as after the previous trial and the
+ * variance of every language probability between trials is low enough. Iteration limit of a trial is scaled by
+ * the amount of distinct n-grams in the text, so short texts are not sampled over and over again.</p>
+ * <pre>
+ * detector.setTrialPolicy(TrialPolicy.ADAPTIVE);
+ * </pre>
+ *
+ * @author Konstantin Gusarov
+ */
+public final class TrialPolicy {
+    private static final int TRIAL_COUNT = 7;
+    private static final int ITERATION_LIMIT = 1000;
+
+    /**
+     * Original policy: always run 7 trials with 1000 iterations limit
+     */
+    public static final TrialPolicy FIXED = new TrialPolicy(TRIAL_COUNT, TRIAL_COUNT, 0, 0);
+
+    /**
+     * Adaptive policy: run 2 to 7 trials until the probabilities vary between trials by less than 0.001,
+     * limit trials to 50 iterations per distinct n-gram
+     */
+    public static final TrialPolicy ADAPTIVE = new TrialPolicy(2, TRIAL_COUNT, 0.001, 50);
+
+    private final int minTrials;
+    private final int maxTrials;
+    private final double maxVariance;
+    private final int iterationsPerNGram;
+
+    /**
+     * Create trial policy
+     *
+     * @param minTrials             Minimal amount of trials
+     * @param maxTrials             Maximal amount of trials
+     * @param maxVariance           Maximal variance of language probabilities between trials to stop launching
+     *                              new trials before {@code maxTrials} is reached
+     * @param iterationsPerNGram    Iteration limit of a trial per distinct n-gram of the text,
+     *                              {@code 0} to always use limit of 1000 iterations
+     */
+    public TrialPolicy(final int minTrials, final int maxTrials, final double maxVariance,
+                       final int iterationsPerNGram) {
+        if ((minTrials <= 0) || (maxTrials < minTrials) || (maxVariance < 0) || (iterationsPerNGram < 0)) {
+            throw new IllegalArgumentException("Invalid trial policy: trials " + minTrials + ".." + maxTrials
+                    + ", variance " + maxVariance + ", iterations per n-gram " + iterationsPerNGram);
+        }
+
+        this.minTrials = minTrials;
+        this.maxTrials = maxTrials;
+        this.maxVariance = maxVariance;
+        this.iterationsPerNGram = iterationsPerNGram;
+    }
+
+    /**
+     * Get minimal amount of trials
+     *
+     * @return              Minimal amount of trials
+     */
+    public int getMinTrials() {
+        return minTrials;
+    }
+
+    /**
+     * Get maximal amount of trials
+     *
+     * @return              Maximal amount of trials
+     */
+    public int getMaxTrials() {
+        return maxTrials;
+    }
+
+    /**
+     * Get maximal variance of language probabilities between trials to stop early
+     *
+     * @return              Maximal variance
+     */
+    public double getMaxVariance() {
+        return maxVariance;
+    }
+
+    /**
+     * Get iteration limit of a trial per distinct n-gram
+     *
+     * @return              Iterations per n-gram, {@code 0} if the limit is fixed
+     */
+    public int getIterationsPerNGram() {
+        return iterationsPerNGram;
+    }
+
+    /**
+     * Check whether trials may stop before {@link #getMaxTrials()} is reached
+     *
+     * @return              {@code true} if the policy is adaptive
+     */
+    boolean isAdaptive() {
+        return minTrials < maxTrials;
+    }
+
+    /**
+     * Check whether the iteration limit depends on the amount of distinct n-grams
+     *
+     * @param nGramCount    Amount of n-grams in the text
+     * @return              {@code true} if distinct n-grams have to be counted
+     */
+    boolean limitsIterations(final int nGramCount) {
+        return (iterationsPerNGram > 0) && ((long) nGramCount * iterationsPerNGram < ITERATION_LIMIT);
+    }
+
+    /**
+     * Get iteration limit of a trial
+     *
+     * @param distinctNGrams    Amount of distinct n-grams in the text, the amount of all n-grams can be passed
+     *                          unless {@link #limitsIterations(int)}
+     * @return                  Maximal amount of iterations
+     */
+    int iterationLimit(final int distinctNGrams) {
+        if (iterationsPerNGram == 0) {
+            return ITERATION_LIMIT;
+        }
+
+        return (int) Math.min(ITERATION_LIMIT, (long) distinctNGrams * iterationsPerNGram);
+    }
+
+    @Override
+    public String toString() {
+        return "TrialPolicy{trials=" + minTrials + ".." + maxTrials + ", maxVariance=" + maxVariance
+                + ", iterationsPerNGram=" + iterationsPerNGram + '}';
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+/*
+ * Copyright (C) 2010-2014 Cybozu Labs, 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.Character.UnicodeScript;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link CharacterTable} holds precomputed per-character lookup tables covering the whole
+ * Basic Multilingual Plane: normalized form of every character used for n-gram extraction,
+ * its class flags used for text cleanup and its script used for script routing. Tables are generated
+ * during the build by {@link CharacterTableGenerator} and loaded on class initialization, so normalizing
+ * or classifying a character is a single array load. Tables are computed on class initialization
+ * if the generated resource is missing, i.e. when classes are run without the build.
+ * Users don't use this class directly.
+ *
+ * @author Nakatani Shuyo
+ * @author Konstantin Gusarov
+ */
+public final class CharacterTable {
+    private static final int TABLE_SIZE = Character.MAX_VALUE + 1;
+
+    static final byte LATIN = 1;
+    static final byte NON_LATIN = 1 << 1;
+    static final byte SEPARATOR = 1 << 2;
+    static final byte LETTER = 1 << 3;
+
+    private static final UnicodeScript[] SCRIPTS = UnicodeScript.values();
+
+    /**
+     * Amount of distinct script ids returned by {@link #scriptId(char)}
+     */
+    public static final int SCRIPT_COUNT = SCRIPTS.length;
+
+    private static final char[] NORMALIZED = new char[TABLE_SIZE];
+    private static final byte[] FLAGS = new byte[TABLE_SIZE];
+    private static final byte[] SCRIPT_IDS = new byte[TABLE_SIZE];
+
+    static {
+        try (final InputStream is = CharacterTable.class.getResourceAsStream(CharacterTableGenerator.FILE_NAME)) {
+            if (is == null) {
+                CharacterTableGenerator.compute(NORMALIZED, FLAGS, SCRIPT_IDS);
+            } else {
+                load(new DataInputStream(is), NORMALIZED, FLAGS, SCRIPT_IDS);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to read " + CharacterTableGenerator.FILE_NAME, e);
+        }
+    }
+
+    private CharacterTable() {
+    }
+
+    /**
+     * Character Normalization
+     *
+     * @param ch    Character to be normalized
+     * @return      Normalized character
+     */
+    public static char normalize(final char ch) {
+        return NORMALIZED[ch];
+    }
+
+    /**
+     * Check if character belongs to the ASCII range {@code 'A'..'z'} which is treated as Latin during text cleanup
+     *
+     * @param ch    Character to check
+     * @return      {@code true} if character is Latin
+     */
+    public static boolean isLatin(final char ch) {
+        return (FLAGS[ch] & LATIN) != 0;
+    }
+
+    /**
+     * Check if character is counted as non-Latin during text cleanup, i.e. it is at or above {@code U+0300}
+     * and doesn't belong to Latin Extended Additional block
+     *
+     * @param ch    Character to check
+     * @return      {@code true} if character is non-Latin
+     */
+    public static boolean isNonLatin(final char ch) {
+        return (FLAGS[ch] & NON_LATIN) != 0;
+    }
+
+    /**
+     * Check if character is normalized to space and thus separates n-grams
+     *
+     * @param ch    Character to check
+     * @return      {@code true} if character is a separator
+     */
+    public static boolean isSeparator(final char ch) {
+        return (FLAGS[ch] & SEPARATOR) != 0;
+    }
+
+    /**
+     * Check if character is a letter after normalization
+     *
+     * @param ch    Character to check
+     * @return      {@code true} if normalized character is a letter
+     */
+    public static boolean isLetter(final char ch) {
+        return (FLAGS[ch] & LETTER) != 0;
+    }
+
+    /**
+     * Get script of character, see {@link UnicodeScript}
+     *
+     * @param ch    Character to check
+     * @return      Ordinal of the character script, {@link UnicodeScript#UNKNOWN} for surrogates
+     */
+    public static int scriptId(final char ch) {
+        return SCRIPT_IDS[ch] & 0xFF;
+    }
+
+    /**
+     * Get script by its id
+     *
+     * @param scriptId  Script id returned by {@link #scriptId(char)}
+     * @return          Script
+     */
+    public static UnicodeScript script(final int scriptId) {
+        return SCRIPTS[scriptId];
+    }
+
+    /**
+     * Read tables written by {@link CharacterTableGenerator#write(java.nio.file.Path)}. Scripts are mapped by
+     * name to ordinals of the running Java version, scripts it doesn't know are {@link UnicodeScript#UNKNOWN}.
+     * Tables are passed as arguments since static fields of a class being initialized are slow to access.
+     */
+    private static void load(final DataInputStream in, final char[] normalized, final byte[] flags,
+                             final byte[] scriptIds) throws IOException {
+        if (in.readInt() != CharacterTableGenerator.VERSION) {
+            throw new IOException("Unsupported character table version");
+        }
+
+        final byte[] scripts = new byte[in.readInt()];
+        for (int i = 0; i < scripts.length; i++) {
+            final String name = in.readUTF();
+            scripts[i] = (byte) scriptOrdinal(name);
+        }
+
+        final byte[] chars = new byte[normalized.length * Character.BYTES];
+        in.readFully(chars);
+        ByteBuffer.wrap(chars).asCharBuffer().get(normalized);
+        in.readFully(flags);
+        in.readFully(scriptIds);
+
+        for (int i = 0; i < scriptIds.length; i++) {
+            scriptIds[i] = scripts[scriptIds[i] & 0xFF];
+        }
+    }
+
+    private static int scriptOrdinal(final String name) {
+        try {
+            return UnicodeScript.valueOf(name).ordinal();
+        } catch (final IllegalArgumentException e) {
+            return UnicodeScript.UNKNOWN.ordinal();
+        }
+    }
+}
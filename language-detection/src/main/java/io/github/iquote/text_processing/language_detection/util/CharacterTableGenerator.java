@@ -0,0 +1,328 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+/*
+ * Copyright (C) 2010-2014 Cybozu Labs, 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.Character.UnicodeBlock;
+import java.lang.Character.UnicodeScript;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import static java.lang.Character.UnicodeBlock.*;
+
+/**
+ * <p>Computes the lookup tables of {@link CharacterTable} from Unicode blocks of every character of the
+ * Basic Multilingual Plane and writes them into the {@value #FILE_NAME} resource, so applications load
+ * the tables instead of classifying 65536 characters on startup.</p>
+ * <p>File layout (big-endian): format version, script count followed by script names, normalized form of
+ * every character, class flags of every character and index of the character script in the script names.
+ * Scripts are stored by name since {@link UnicodeScript} ordinals differ between Java versions.</p>
+ * <p>The build writes the resource by running {@code main} with the output directory as an argument.
+ * Users don't use this class directly.</p>
+ *
+ * @author Nakatani Shuyo
+ * @author Konstantin Gusarov
+ */
+public final class CharacterTableGenerator {
+    static final String FILE_NAME = "character-table.bin";
+    static final int VERSION = 1;
+
+    private static final int TABLE_SIZE = Character.MAX_VALUE + 1;
+
+    private static final String LATIN1_EXCLUDED = Messages.getString("NGram.LATIN1_EXCLUDE");
+
+    /**
+     * CJK Kanji Normalization Mapping
+     */
+    private static final String[] CJK_CLASSES = {
+            Messages.getString("NGram.KANJI_1_0"),
+            Messages.getString("NGram.KANJI_1_2"),
+            Messages.getString("NGram.KANJI_1_4"),
+            Messages.getString("NGram.KANJI_1_8"),
+            Messages.getString("NGram.KANJI_1_11"),
+            Messages.getString("NGram.KANJI_1_12"),
+            Messages.getString("NGram.KANJI_1_13"),
+            Messages.getString("NGram.KANJI_1_14"),
+            Messages.getString("NGram.KANJI_1_16"),
+            Messages.getString("NGram.KANJI_1_18"),
+            Messages.getString("NGram.KANJI_1_22"),
+            Messages.getString("NGram.KANJI_1_27"),
+            Messages.getString("NGram.KANJI_1_29"),
+            Messages.getString("NGram.KANJI_1_31"),
+            Messages.getString("NGram.KANJI_1_35"),
+            Messages.getString("NGram.KANJI_2_0"),
+            Messages.getString("NGram.KANJI_2_1"),
+            Messages.getString("NGram.KANJI_2_4"),
+            Messages.getString("NGram.KANJI_2_9"),
+            Messages.getString("NGram.KANJI_2_10"),
+            Messages.getString("NGram.KANJI_2_11"),
+            Messages.getString("NGram.KANJI_2_12"),
+            Messages.getString("NGram.KANJI_2_13"),
+            Messages.getString("NGram.KANJI_2_15"),
+            Messages.getString("NGram.KANJI_2_16"),
+            Messages.getString("NGram.KANJI_2_18"),
+            Messages.getString("NGram.KANJI_2_21"),
+            Messages.getString("NGram.KANJI_2_22"),
+            Messages.getString("NGram.KANJI_2_23"),
+            Messages.getString("NGram.KANJI_2_28"),
+            Messages.getString("NGram.KANJI_2_29"),
+            Messages.getString("NGram.KANJI_2_30"),
+            Messages.getString("NGram.KANJI_2_31"),
+            Messages.getString("NGram.KANJI_2_32"),
+            Messages.getString("NGram.KANJI_2_35"),
+            Messages.getString("NGram.KANJI_2_36"),
+            Messages.getString("NGram.KANJI_2_37"),
+            Messages.getString("NGram.KANJI_2_38"),
+            Messages.getString("NGram.KANJI_3_1"),
+            Messages.getString("NGram.KANJI_3_2"),
+            Messages.getString("NGram.KANJI_3_3"),
+            Messages.getString("NGram.KANJI_3_4"),
+            Messages.getString("NGram.KANJI_3_5"),
+            Messages.getString("NGram.KANJI_3_8"),
+            Messages.getString("NGram.KANJI_3_9"),
+            Messages.getString("NGram.KANJI_3_11"),
+            Messages.getString("NGram.KANJI_3_12"),
+            Messages.getString("NGram.KANJI_3_13"),
+            Messages.getString("NGram.KANJI_3_15"),
+            Messages.getString("NGram.KANJI_3_16"),
+            Messages.getString("NGram.KANJI_3_18"),
+            Messages.getString("NGram.KANJI_3_19"),
+            Messages.getString("NGram.KANJI_3_22"),
+            Messages.getString("NGram.KANJI_3_23"),
+            Messages.getString("NGram.KANJI_3_27"),
+            Messages.getString("NGram.KANJI_3_29"),
+            Messages.getString("NGram.KANJI_3_30"),
+            Messages.getString("NGram.KANJI_3_31"),
+            Messages.getString("NGram.KANJI_3_32"),
+            Messages.getString("NGram.KANJI_3_35"),
+            Messages.getString("NGram.KANJI_3_36"),
+            Messages.getString("NGram.KANJI_3_37"),
+            Messages.getString("NGram.KANJI_3_38"),
+            Messages.getString("NGram.KANJI_4_0"),
+            Messages.getString("NGram.KANJI_4_9"),
+            Messages.getString("NGram.KANJI_4_10"),
+            Messages.getString("NGram.KANJI_4_16"),
+            Messages.getString("NGram.KANJI_4_17"),
+            Messages.getString("NGram.KANJI_4_18"),
+            Messages.getString("NGram.KANJI_4_22"),
+            Messages.getString("NGram.KANJI_4_24"),
+            Messages.getString("NGram.KANJI_4_28"),
+            Messages.getString("NGram.KANJI_4_34"),
+            Messages.getString("NGram.KANJI_4_39"),
+            Messages.getString("NGram.KANJI_5_10"),
+            Messages.getString("NGram.KANJI_5_11"),
+            Messages.getString("NGram.KANJI_5_12"),
+            Messages.getString("NGram.KANJI_5_13"),
+            Messages.getString("NGram.KANJI_5_14"),
+            Messages.getString("NGram.KANJI_5_18"),
+            Messages.getString("NGram.KANJI_5_26"),
+            Messages.getString("NGram.KANJI_5_29"),
+            Messages.getString("NGram.KANJI_5_34"),
+            Messages.getString("NGram.KANJI_5_39"),
+            Messages.getString("NGram.KANJI_6_0"),
+            Messages.getString("NGram.KANJI_6_3"),
+            Messages.getString("NGram.KANJI_6_9"),
+            Messages.getString("NGram.KANJI_6_10"),
+            Messages.getString("NGram.KANJI_6_11"),
+            Messages.getString("NGram.KANJI_6_12"),
+            Messages.getString("NGram.KANJI_6_16"),
+            Messages.getString("NGram.KANJI_6_18"),
+            Messages.getString("NGram.KANJI_6_20"),
+            Messages.getString("NGram.KANJI_6_21"),
+            Messages.getString("NGram.KANJI_6_22"),
+            Messages.getString("NGram.KANJI_6_23"),
+            Messages.getString("NGram.KANJI_6_25"),
+            Messages.getString("NGram.KANJI_6_28"),
+            Messages.getString("NGram.KANJI_6_29"),
+            Messages.getString("NGram.KANJI_6_30"),
+            Messages.getString("NGram.KANJI_6_32"),
+            Messages.getString("NGram.KANJI_6_34"),
+            Messages.getString("NGram.KANJI_6_35"),
+            Messages.getString("NGram.KANJI_6_37"),
+            Messages.getString("NGram.KANJI_6_39"),
+            Messages.getString("NGram.KANJI_7_0"),
+            Messages.getString("NGram.KANJI_7_3"),
+            Messages.getString("NGram.KANJI_7_6"),
+            Messages.getString("NGram.KANJI_7_7"),
+            Messages.getString("NGram.KANJI_7_9"),
+            Messages.getString("NGram.KANJI_7_11"),
+            Messages.getString("NGram.KANJI_7_12"),
+            Messages.getString("NGram.KANJI_7_13"),
+            Messages.getString("NGram.KANJI_7_16"),
+            Messages.getString("NGram.KANJI_7_18"),
+            Messages.getString("NGram.KANJI_7_19"),
+            Messages.getString("NGram.KANJI_7_20"),
+            Messages.getString("NGram.KANJI_7_21"),
+            Messages.getString("NGram.KANJI_7_23"),
+            Messages.getString("NGram.KANJI_7_25"),
+            Messages.getString("NGram.KANJI_7_28"),
+            Messages.getString("NGram.KANJI_7_29"),
+            Messages.getString("NGram.KANJI_7_32"),
+            Messages.getString("NGram.KANJI_7_33"),
+            Messages.getString("NGram.KANJI_7_35"),
+            Messages.getString("NGram.KANJI_7_37"),
+    };
+
+    private CharacterTableGenerator() {
+    }
+
+    public static void main(final String[] args) {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: CharacterTableGenerator <output directory>");
+        }
+
+        write(Paths.get(args[0]).resolve(FILE_NAME));
+    }
+
+    /**
+     * Compute tables and write them into the given file
+     *
+     * @param file                  File to be written
+     * @throws UncheckedIOException In case file can't be written
+     */
+    public static void write(final Path file) {
+        final char[] normalized = new char[TABLE_SIZE];
+        final byte[] flags = new byte[TABLE_SIZE];
+        final byte[] scriptIds = new byte[TABLE_SIZE];
+        compute(normalized, flags, scriptIds);
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(VERSION);
+
+                final UnicodeScript[] scripts = UnicodeScript.values();
+                out.writeInt(scripts.length);
+                for (final UnicodeScript script : scripts) {
+                    out.writeUTF(script.name());
+                }
+
+                for (final char ch : normalized) {
+                    out.writeChar(ch);
+                }
+                out.write(flags);
+                out.write(scriptIds);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to write character table " + file, e);
+        }
+    }
+
+    /**
+     * Compute normalized form, class flags and script ordinal of every character
+     *
+     * @param normalized            Normalized characters to be filled
+     * @param flags                 Character class flags to be filled, see {@link CharacterTable}
+     * @param scriptIds             {@link UnicodeScript} ordinals to be filled
+     */
+    static void compute(final char[] normalized, final byte[] flags, final byte[] scriptIds) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final char ch = (char) i;
+            final UnicodeBlock block = UnicodeBlock.of(ch);
+            final char n = computeNormalized(ch, block);
+            byte f = 0;
+
+            if ((ch >= 'A') && (ch <= 'z')) {
+                f |= CharacterTable.LATIN;
+            } else if ((ch >= '\u0300') && !Objects.equals(block, LATIN_EXTENDED_ADDITIONAL)) {
+                f |= CharacterTable.NON_LATIN;
+            }
+
+            if (n == ' ') {
+                f |= CharacterTable.SEPARATOR;
+            } else if (Character.isLetter(n)) {
+                f |= CharacterTable.LETTER;
+            }
+
+            normalized[i] = n;
+            flags[i] = f;
+            scriptIds[i] = (byte) UnicodeScript.of(i).ordinal();
+        }
+
+        // CJK Kanji representatives are never separators, so flags are left intact
+        for (final String cjkClass : CJK_CLASSES) {
+            final char representative = cjkClass.charAt(0);
+
+            for (int i = 0; i < cjkClass.length(); i++) {
+                final char ch = cjkClass.charAt(i);
+                if (Objects.equals(UnicodeBlock.of(ch), CJK_UNIFIED_IDEOGRAPHS)) {
+                    normalized[ch] = representative;
+                }
+            }
+        }
+    }
+
+    private static char computeNormalized(final char ch, final UnicodeBlock block) {
+        if (Objects.equals(block, GENERAL_PUNCTUATION)) {
+            return ' ';
+        }
+
+        if (Objects.equals(block, BASIC_LATIN) && (ch < 'A' || (ch < 'a' && ch > 'Z') || ch > 'z')) {
+            return ' ';
+        }
+
+        if (Objects.equals(block, LATIN_1_SUPPLEMENT) && (LATIN1_EXCLUDED.indexOf(ch) >= 0)) {
+            return ' ';
+        }
+
+        if (Objects.equals(block, LATIN_EXTENDED_B)) {
+            // normalization for Romanian
+            if (ch == '\u0219') {
+                // Small S with comma below => with cedilla
+                return '\u015f';
+            }
+
+            if (ch == '\u021b') {
+                // Small T with comma below => with cedilla
+                return '\u0163';
+            }
+        }
+
+        if (Objects.equals(block, ARABIC) && (ch == '\u06cc')) {
+            // Farsi yeh => Arabic yeh
+            return '\u064a';
+        }
+
+        if (Objects.equals(block, LATIN_EXTENDED_ADDITIONAL) && (ch >= '\u1ea0')) {
+            return '\u1ec3';
+        }
+
+        if (Objects.equals(block, HIRAGANA)) {
+            return '\u3042';
+        }
+
+        if (Objects.equals(block, KATAKANA)) {
+            return '\u30a2';
+        }
+
+        if (Objects.equals(block, BOPOMOFO) || Objects.equals(block, BOPOMOFO_EXTENDED)) {
+            return '\u3105';
+        }
+
+        if (Objects.equals(block, HANGUL_SYLLABLES)) {
+            return '\uac00';
+        }
+
+        return ch;
+    }
+}
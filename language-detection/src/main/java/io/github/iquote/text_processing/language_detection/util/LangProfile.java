@@ -21,6 +21,7 @@ import io.github.iquote.text_processing.language_detection.langdetect.LangProfil
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -106,6 +107,24 @@ public class LangProfile {
         frequencies.put(gram, val);
     }
 
+    /**
+     * Add n-gram frequencies of another profile of the same language, i.e. the one trained on another part
+     * of the corpus
+     *
+     * @param other     Profile to be merged into this one
+     */
+    public void merge(final LangProfile other) {
+        if (!Objects.equals(name, other.name)) {
+            throw new IllegalArgumentException("Can't merge profile " + other.name + " into " + name);
+        }
+
+        for (int i = 0; i < nGramCount.length; i++) {
+            nGramCount[i] += other.nGramCount[i];
+        }
+
+        other.frequencies.forEach((gram, count) -> frequencies.merge(gram, count, Integer::sum));
+    }
+
     /**
      * Eliminate below less frequency n-grams and noise Latin alphabets
      */
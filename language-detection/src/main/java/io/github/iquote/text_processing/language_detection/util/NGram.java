@@ -16,16 +16,10 @@ package io.github.iquote.text_processing.language_detection.util;
  * limitations under the License.
  */
 
-import com.google.common.collect.Maps;
-
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.lang.Character.UnicodeBlock.*;
-
 /**
  * Cut out N-gram from text.
  * Users don't use this class directly.
@@ -34,141 +28,6 @@ import static java.lang.Character.UnicodeBlock.*;
  * @author Konstantin Gusarov
  */
 public class NGram {
-    private static final String LATIN1_EXCLUDED = Messages.getString("NGram.LATIN1_EXCLUDE");
-    private static final HashMap<Character, Character> CJK_MAP = Maps.newHashMap();
-
-    /**
-     * CJK Kanji Normalization Mapping
-     */
-    private static final String[] CJK_CLASSES = {
-            Messages.getString("NGram.KANJI_1_0"),
-            Messages.getString("NGram.KANJI_1_2"),
-            Messages.getString("NGram.KANJI_1_4"),
-            Messages.getString("NGram.KANJI_1_8"),
-            Messages.getString("NGram.KANJI_1_11"),
-            Messages.getString("NGram.KANJI_1_12"),
-            Messages.getString("NGram.KANJI_1_13"),
-            Messages.getString("NGram.KANJI_1_14"),
-            Messages.getString("NGram.KANJI_1_16"),
-            Messages.getString("NGram.KANJI_1_18"),
-            Messages.getString("NGram.KANJI_1_22"),
-            Messages.getString("NGram.KANJI_1_27"),
-            Messages.getString("NGram.KANJI_1_29"),
-            Messages.getString("NGram.KANJI_1_31"),
-            Messages.getString("NGram.KANJI_1_35"),
-            Messages.getString("NGram.KANJI_2_0"),
-            Messages.getString("NGram.KANJI_2_1"),
-            Messages.getString("NGram.KANJI_2_4"),
-            Messages.getString("NGram.KANJI_2_9"),
-            Messages.getString("NGram.KANJI_2_10"),
-            Messages.getString("NGram.KANJI_2_11"),
-            Messages.getString("NGram.KANJI_2_12"),
-            Messages.getString("NGram.KANJI_2_13"),
-            Messages.getString("NGram.KANJI_2_15"),
-            Messages.getString("NGram.KANJI_2_16"),
-            Messages.getString("NGram.KANJI_2_18"),
-            Messages.getString("NGram.KANJI_2_21"),
-            Messages.getString("NGram.KANJI_2_22"),
-            Messages.getString("NGram.KANJI_2_23"),
-            Messages.getString("NGram.KANJI_2_28"),
-            Messages.getString("NGram.KANJI_2_29"),
-            Messages.getString("NGram.KANJI_2_30"),
-            Messages.getString("NGram.KANJI_2_31"),
-            Messages.getString("NGram.KANJI_2_32"),
-            Messages.getString("NGram.KANJI_2_35"),
-            Messages.getString("NGram.KANJI_2_36"),
-            Messages.getString("NGram.KANJI_2_37"),
-            Messages.getString("NGram.KANJI_2_38"),
-            Messages.getString("NGram.KANJI_3_1"),
-            Messages.getString("NGram.KANJI_3_2"),
-            Messages.getString("NGram.KANJI_3_3"),
-            Messages.getString("NGram.KANJI_3_4"),
-            Messages.getString("NGram.KANJI_3_5"),
-            Messages.getString("NGram.KANJI_3_8"),
-            Messages.getString("NGram.KANJI_3_9"),
-            Messages.getString("NGram.KANJI_3_11"),
-            Messages.getString("NGram.KANJI_3_12"),
-            Messages.getString("NGram.KANJI_3_13"),
-            Messages.getString("NGram.KANJI_3_15"),
-            Messages.getString("NGram.KANJI_3_16"),
-            Messages.getString("NGram.KANJI_3_18"),
-            Messages.getString("NGram.KANJI_3_19"),
-            Messages.getString("NGram.KANJI_3_22"),
-            Messages.getString("NGram.KANJI_3_23"),
-            Messages.getString("NGram.KANJI_3_27"),
-            Messages.getString("NGram.KANJI_3_29"),
-            Messages.getString("NGram.KANJI_3_30"),
-            Messages.getString("NGram.KANJI_3_31"),
-            Messages.getString("NGram.KANJI_3_32"),
-            Messages.getString("NGram.KANJI_3_35"),
-            Messages.getString("NGram.KANJI_3_36"),
-            Messages.getString("NGram.KANJI_3_37"),
-            Messages.getString("NGram.KANJI_3_38"),
-            Messages.getString("NGram.KANJI_4_0"),
-            Messages.getString("NGram.KANJI_4_9"),
-            Messages.getString("NGram.KANJI_4_10"),
-            Messages.getString("NGram.KANJI_4_16"),
-            Messages.getString("NGram.KANJI_4_17"),
-            Messages.getString("NGram.KANJI_4_18"),
-            Messages.getString("NGram.KANJI_4_22"),
-            Messages.getString("NGram.KANJI_4_24"),
-            Messages.getString("NGram.KANJI_4_28"),
-            Messages.getString("NGram.KANJI_4_34"),
-            Messages.getString("NGram.KANJI_4_39"),
-            Messages.getString("NGram.KANJI_5_10"),
-            Messages.getString("NGram.KANJI_5_11"),
-            Messages.getString("NGram.KANJI_5_12"),
-            Messages.getString("NGram.KANJI_5_13"),
-            Messages.getString("NGram.KANJI_5_14"),
-            Messages.getString("NGram.KANJI_5_18"),
-            Messages.getString("NGram.KANJI_5_26"),
-            Messages.getString("NGram.KANJI_5_29"),
-            Messages.getString("NGram.KANJI_5_34"),
-            Messages.getString("NGram.KANJI_5_39"),
-            Messages.getString("NGram.KANJI_6_0"),
-            Messages.getString("NGram.KANJI_6_3"),
-            Messages.getString("NGram.KANJI_6_9"),
-            Messages.getString("NGram.KANJI_6_10"),
-            Messages.getString("NGram.KANJI_6_11"),
-            Messages.getString("NGram.KANJI_6_12"),
-            Messages.getString("NGram.KANJI_6_16"),
-            Messages.getString("NGram.KANJI_6_18"),
-            Messages.getString("NGram.KANJI_6_20"),
-            Messages.getString("NGram.KANJI_6_21"),
-            Messages.getString("NGram.KANJI_6_22"),
-            Messages.getString("NGram.KANJI_6_23"),
-            Messages.getString("NGram.KANJI_6_25"),
-            Messages.getString("NGram.KANJI_6_28"),
-            Messages.getString("NGram.KANJI_6_29"),
-            Messages.getString("NGram.KANJI_6_30"),
-            Messages.getString("NGram.KANJI_6_32"),
-            Messages.getString("NGram.KANJI_6_34"),
-            Messages.getString("NGram.KANJI_6_35"),
-            Messages.getString("NGram.KANJI_6_37"),
-            Messages.getString("NGram.KANJI_6_39"),
-            Messages.getString("NGram.KANJI_7_0"),
-            Messages.getString("NGram.KANJI_7_3"),
-            Messages.getString("NGram.KANJI_7_6"),
-            Messages.getString("NGram.KANJI_7_7"),
-            Messages.getString("NGram.KANJI_7_9"),
-            Messages.getString("NGram.KANJI_7_11"),
-            Messages.getString("NGram.KANJI_7_12"),
-            Messages.getString("NGram.KANJI_7_13"),
-            Messages.getString("NGram.KANJI_7_16"),
-            Messages.getString("NGram.KANJI_7_18"),
-            Messages.getString("NGram.KANJI_7_19"),
-            Messages.getString("NGram.KANJI_7_20"),
-            Messages.getString("NGram.KANJI_7_21"),
-            Messages.getString("NGram.KANJI_7_23"),
-            Messages.getString("NGram.KANJI_7_25"),
-            Messages.getString("NGram.KANJI_7_28"),
-            Messages.getString("NGram.KANJI_7_29"),
-            Messages.getString("NGram.KANJI_7_32"),
-            Messages.getString("NGram.KANJI_7_33"),
-            Messages.getString("NGram.KANJI_7_35"),
-            Messages.getString("NGram.KANJI_7_37"),
-    };
-
     private static final String[] NORMALIZED_VI_CHARS = {
             Messages.getString("NORMALIZED_VI_CHARS_0300"),
             Messages.getString("NORMALIZED_VI_CHARS_0301"),
@@ -183,22 +42,33 @@ public class NGram {
 
     public static final int MAX_NGRAM_LENGTH = 3;
 
-    static {
-        for (final String cjkClass : CJK_CLASSES) {
-            final char representative = cjkClass.charAt(0);
+    /**
+     * Packed key value that never corresponds to a valid n-gram
+     */
+    public static final long INVALID_KEY = 0L;
 
-            cjkClass.chars()
-                    .mapToObj(i -> (char) i)
-                    .forEach(c -> CJK_MAP.put(c, representative));
-        }
-    }
+    private static final int CHAR_BITS = Character.SIZE;
 
-    private String chars;
+    /**
+     * Ring buffer holding up to {@link #MAX_NGRAM_LENGTH} last characters, {@code end} points
+     * to the slot the next character will be written to
+     */
+    private final char[] buffer = new char[MAX_NGRAM_LENGTH];
+    private int end;
+    private int length;
     private boolean capital;
 
     public NGram() {
-        chars = " ";
+        reset();
+    }
+
+    /**
+     * Reset ngram buffer to its initial state so the instance can be reused for another text
+     */
+    public void reset() {
+        length = 0;
         capital = false;
+        push(' ');
     }
 
     /**
@@ -208,20 +78,17 @@ public class NGram {
      */
     public void addChar(final char ch) {
         final char normalized = normalize(ch);
-        final char lastchar = chars.charAt(chars.length() - 1);
+        final char lastchar = charFromEnd(0);
 
         if (lastchar == ' ') {
-            chars = " ";
-            capital = false;
+            reset();
 
             if (normalized == ' ') {
                 return;
             }
-        } else if (chars.length() >= MAX_NGRAM_LENGTH) {
-            chars = chars.substring(1);
         }
 
-        chars += Character.toString(normalized);
+        push(normalized);
 
         if (Character.isUpperCase(normalized)) {
             if (Character.isUpperCase(lastchar)) {
@@ -240,94 +107,134 @@ public class NGram {
      */
     @Nullable
     public String get(final int n) {
-        if (capital) {
+        if (!isValid(n)) {
             return null;
         }
 
-        final int len = chars.length();
-        if (n < 1 || n > MAX_NGRAM_LENGTH || len < n) {
-            return null;
-        }
-
-        if (n == 1) {
-            return getSingleCharNGram(len);
-        }
-
-        return chars.substring(len - n, len);
-    }
-
-    private String getSingleCharNGram(final int len) {
-        final char ch = chars.charAt(len - 1);
-        if (ch == ' ') {
-            return null;
+        final char[] result = new char[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = charFromEnd(n - i - 1);
         }
 
-        return Character.toString(ch);
+        return new String(result);
     }
 
     /**
-     * Character Normalization
+     * Get n-Gram packed into a {@code long} key (see {@link #pack(CharSequence)}).
+     * Unlike {@link #get(int)} this method doesn't allocate anything.
      *
-     * @param ch    Character to be normalized
-     * @return      Normalized character
+     * @param n     Length of n-gram
+     * @return      Packed n-Gram key ({@link #INVALID_KEY} if it is invalid)
      */
-    public static char normalize(final char ch) {
-        final Character.UnicodeBlock block = of(ch);
-        if (Objects.equals(block, GENERAL_PUNCTUATION)) {
-            return ' ';
+    public long getKey(final int n) {
+        if (!isValid(n)) {
+            return INVALID_KEY;
         }
 
-        if (Objects.equals(block, BASIC_LATIN) && (ch < 'A' || (ch < 'a' && ch > 'Z') || ch > 'z')) {
-            return ' ';
+        long key = n;
+        for (int i = n - 1; i >= 0; i--) {
+            key = (key << CHAR_BITS) | charFromEnd(i);
         }
 
-        if (Objects.equals(block, LATIN_1_SUPPLEMENT) && (LATIN1_EXCLUDED.indexOf(ch) >= 0)) {
-            return ' ';
+        return key;
+    }
+
+    private boolean isValid(final int n) {
+        if (capital || n < 1 || n > MAX_NGRAM_LENGTH || length < n) {
+            return false;
         }
 
-        if (Objects.equals(block, LATIN_EXTENDED_B)) {
-            // normalization for Romanian
-            if (ch == '\u0219') {
-                // Small S with comma below => with cedilla
-                return '\u015f';
-            }
+        return (n != 1) || (charFromEnd(0) != ' ');
+    }
 
-            if (ch == '\u021b') {
-                // Small T with comma below => with cedilla
-                return '\u0163';
-            }
-        }
+    private void push(final char ch) {
+        buffer[end] = ch;
+        end = (end + 1) % MAX_NGRAM_LENGTH;
 
-        if (Objects.equals(block, ARABIC) && (ch == '\u06cc')) {
-            // Farsi yeh => Arabic yeh
-            return '\u064a';
+        if (length < MAX_NGRAM_LENGTH) {
+            length++;
         }
+    }
 
-        if (Objects.equals(block, LATIN_EXTENDED_ADDITIONAL) && (ch >= '\u1ea0')) {
-            return '\u1ec3';
-        }
+    private char charFromEnd(final int offset) {
+        return buffer[(end + MAX_NGRAM_LENGTH - 1 - offset) % MAX_NGRAM_LENGTH];
+    }
 
-        if (Objects.equals(block, HIRAGANA)) {
-            return '\u3042';
+    /**
+     * Pack n-gram into a {@code long} key. The key holds n-gram length followed by
+     * up to {@link #MAX_NGRAM_LENGTH} 16-bit characters, so keys of different n-grams never collide.
+     *
+     * @param gram      N-Gram to be packed
+     * @return          Packed n-Gram key ({@link #INVALID_KEY} if n-gram length is invalid)
+     */
+    public static long pack(final CharSequence gram) {
+        final int n = gram.length();
+        if (n < 1 || n > MAX_NGRAM_LENGTH) {
+            return INVALID_KEY;
         }
 
-        if (Objects.equals(block, KATAKANA)) {
-            return '\u30a2';
+        long key = n;
+        for (int i = 0; i < n; i++) {
+            key = (key << CHAR_BITS) | gram.charAt(i);
         }
 
-        if (Objects.equals(block, BOPOMOFO) || Objects.equals(block, BOPOMOFO_EXTENDED)) {
-            return '\u3105';
+        return key;
+    }
+
+    /**
+     * Restore n-gram from its packed key
+     *
+     * @param key       Packed n-Gram key
+     * @return          N-Gram string
+     */
+    public static String unpack(final long key) {
+        final int n = lengthOf(key);
+        final char[] result = new char[n];
+
+        for (int i = 0; i < n; i++) {
+            result[i] = (char) (key >>> (CHAR_BITS * (n - i - 1)));
         }
 
-        if (Objects.equals(block, CJK_UNIFIED_IDEOGRAPHS) && CJK_MAP.containsKey(ch)) {
-            return CJK_MAP.get(ch);
+        return new String(result);
+    }
+
+    private static int lengthOf(final long key) {
+        for (int n = 1; n <= MAX_NGRAM_LENGTH; n++) {
+            if ((key >>> (CHAR_BITS * n)) == n) {
+                return n;
+            }
         }
 
-        if (Objects.equals(block, HANGUL_SYLLABLES)) {
-            return '\uac00';
+        throw new IllegalArgumentException("Invalid n-gram key: " + key);
+    }
+
+    /**
+     * Character Normalization
+     *
+     * @param ch    Character to be normalized
+     * @return      Normalized character
+     * @see CharacterTable#normalize(char)
+     */
+    public static char normalize(final char ch) {
+        return CharacterTable.normalize(ch);
+    }
+
+    /**
+     * Compose Vietnamese alphabet followed by Diacritical Mark(U+03xx) into U+1Exx.
+     * This is the single character form of {@link #normalizeVietnamese(String)}.
+     *
+     * @param alphabet  Alphabet character
+     * @param mark      Character following the alphabet
+     * @return          Composed character or {@code 0} if the pair is not normalized
+     */
+    public static char composeVietnamese(final char alphabet, final char mark) {
+        final int dmark = DMARK_CLASS.indexOf(mark);
+        if (dmark < 0) {
+            return 0;
         }
 
-        return ch;
+        final int index = TO_NORMALIZE_VI_CHARS.indexOf(alphabet);
+        return (index < 0) ? 0 : NORMALIZED_VI_CHARS[dmark].charAt(index);
     }
 
     /**
@@ -0,0 +1,176 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * {@link NGramDictionary} maps n-grams packed into {@code long} keys (see {@link NGram#pack(CharSequence)})
+ * to dense row indices. Rows are assigned in insertion order starting from zero, so they can be used
+ * to address a contiguous probability matrix.
+ * Users don't use this class directly.
+ *
+ * @author Konstantin Gusarov
+ */
+public class NGramDictionary {
+    /**
+     * Row index returned for n-grams that are not present in the dictionary
+     */
+    public static final int NOT_FOUND = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] keys;
+    private int[] rows;
+    private long[] keysByRow;
+    private int mask;
+    private int size;
+
+    public NGramDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize      Expected amount of n-grams that will be stored in this dictionary
+     */
+    public NGramDictionary(final int expectedSize) {
+        final int capacity = tableSizeFor(Math.max(expectedSize, 1) * 2);
+
+        keys = new long[capacity];
+        rows = new int[capacity];
+        keysByRow = new long[Math.max(expectedSize, 1)];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Find row index of the given n-gram key
+     *
+     * @param key       Packed n-gram key
+     * @return          Row index or {@link #NOT_FOUND} if n-gram is unknown
+     */
+    public int get(final long key) {
+        if (key == NGram.INVALID_KEY) {
+            return NOT_FOUND;
+        }
+
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final long k = keys[slot];
+            if (k == key) {
+                return rows[slot];
+            }
+
+            if (k == NGram.INVALID_KEY) {
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    /**
+     * Find row index of the given n-gram key or assign a new one if n-gram is unknown
+     *
+     * @param key       Packed n-gram key
+     * @return          Row index of the n-gram
+     */
+    public int add(final long key) {
+        if (key == NGram.INVALID_KEY) {
+            throw new IllegalArgumentException("Invalid n-gram key");
+        }
+
+        int slot = slot(key, mask);
+        for (; keys[slot] != NGram.INVALID_KEY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return rows[slot];
+            }
+        }
+
+        final int row = size++;
+        keys[slot] = key;
+        rows[slot] = row;
+
+        if (row == keysByRow.length) {
+            keysByRow = Arrays.copyOf(keysByRow, row * 2);
+        }
+        keysByRow[row] = key;
+
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        return row;
+    }
+
+    /**
+     * Get packed key of the n-gram stored at the given row
+     *
+     * @param row       Row index
+     * @return          Packed n-gram key
+     */
+    public long keyAt(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range [0, " + size + ')');
+        }
+
+        return keysByRow[row];
+    }
+
+    /**
+     * Get amount of n-grams stored in this dictionary
+     *
+     * @return      N-Gram count
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldRows = rows;
+
+        keys = new long[capacity];
+        rows = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key != NGram.INVALID_KEY) {
+                int slot = slot(key, mask);
+                while (keys[slot] != NGram.INVALID_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = key;
+                rows[slot] = oldRows[i];
+            }
+        }
+    }
+
+    private static int slot(final long key, final int mask) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return (int) h & mask;
+    }
+
+    private static int tableSizeFor(final int n) {
+        final int highest = Integer.highestOneBit(n);
+        return (highest == n) ? n : highest << 1;
+    }
+}
@@ -0,0 +1,221 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+/*
+ * Copyright (C) 2010-2014 Cybozu Labs, 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * <p>{@link TextSanitizer} prepares text for n-gram extraction in a single traversal: URLs and e-mail
+ * addresses are replaced by a space, Vietnamese alphabet followed by a diacritical mark is composed into a single
+ * character and runs of spaces are collapsed.</p>
+ * <p>The result is the same as applying {@code https?://[-_.?&~;+=/#0-9A-Za-z]{1,2076}} and
+ * {@code [-_.0-9A-Za-z]{1,64}@[-_0-9A-Za-z]{1,255}[-_.0-9A-Za-z]{1,255}} replacements, then
+ * {@link NGram#normalizeVietnamese(String)} and then collapsing the spaces, but no intermediate strings are built.</p>
+ * Users don't use this class directly.
+ *
+ * @author Konstantin Gusarov
+ */
+public final class TextSanitizer {
+    private static final String HTTP = "http";
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private static final int MAX_URL_LENGTH = 2076;
+    private static final int MAX_MAIL_LOCAL_LENGTH = 64;
+    private static final int MAX_MAIL_DOMAIN_LENGTH = 255;
+
+    private static final byte URL = 1;
+    private static final byte MAIL = 1 << 1;
+    private static final byte MAIL_DOMAIN = 1 << 2;
+
+    private static final long NO_MAIL = -1;
+
+    private static final byte[] ASCII_CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < ASCII_CLASSES.length; c++) {
+            if (((c >= '0') && (c <= '9')) || ((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z'))
+                    || (c == '-') || (c == '_')) {
+                ASCII_CLASSES[c] = URL | MAIL | MAIL_DOMAIN;
+            } else if (c == '.') {
+                ASCII_CLASSES[c] = URL | MAIL;
+            } else if ("?&~;+=/#".indexOf(c) >= 0) {
+                ASCII_CLASSES[c] = URL;
+            }
+        }
+    }
+
+    private TextSanitizer() {
+        // Utility class
+    }
+
+    /**
+     * Sanitize the text and append the result to the target.
+     *
+     * @param text          Text to be sanitized
+     * @param target        Target for the sanitized text
+     * @param maxLength     Max amount of sanitized characters, counted before the spaces are collapsed
+     * @return              Amount of sanitized characters, counted before the spaces are collapsed
+     */
+    public static int sanitize(final CharSequence text, final StringBuilder target, final int maxLength) {
+        final int length = text.length();
+        int count = 0;
+        char pre = 0;
+
+        // Bounds of the e-mail address found in the current run of address characters
+        boolean inMailRun = false;
+        int mailStart = -1;
+        int mailEnd = -1;
+
+        int i = 0;
+        while ((i < length) && (count < maxLength)) {
+            char c = text.charAt(i);
+            int next = i + 1;
+
+            final int urlEnd = urlEnd(text, i);
+            if (urlEnd >= 0) {
+                c = ' ';
+                next = urlEnd;
+                inMailRun = false;
+            } else {
+                if (is(c, MAIL)) {
+                    if (!inMailRun) {
+                        final long mail = findMail(text, i);
+                        mailStart = (mail == NO_MAIL) ? -1 : (int) (mail >>> 32);
+                        mailEnd = (int) mail;
+                        inMailRun = true;
+                    }
+
+                    if (i == mailStart) {
+                        c = ' ';
+                        next = mailEnd;
+                        inMailRun = false;
+                    }
+                } else {
+                    inMailRun = false;
+                }
+
+                if ((c != ' ') && (next < length)) {
+                    final char composed = NGram.composeVietnamese(c, text.charAt(next));
+                    if (composed != 0) {
+                        c = composed;
+                        next++;
+                        inMailRun = false;
+                    }
+                }
+            }
+
+            if ((c != ' ') || (pre != ' ')) {
+                target.append(c);
+            }
+
+            pre = c;
+            count++;
+            i = next;
+        }
+
+        return count;
+    }
+
+    private static boolean is(final char c, final byte charClass) {
+        return (c < ASCII_CLASSES.length) && ((ASCII_CLASSES[c] & charClass) != 0);
+    }
+
+    /**
+     * Find the URL starting at the given position
+     *
+     * @param text      Text to be scanned
+     * @param start     Position of the URL scheme
+     * @return          End of the URL or {@code -1} if there is no URL at the given position
+     */
+    private static int urlEnd(final CharSequence text, final int start) {
+        if ((text.charAt(start) != 'h') || !startsWith(text, start, HTTP)) {
+            return -1;
+        }
+
+        int pos = start + HTTP.length();
+        if ((pos < text.length()) && (text.charAt(pos) == 's')) {
+            pos++;
+        }
+
+        if (!startsWith(text, pos, SCHEME_SEPARATOR)) {
+            return -1;
+        }
+
+        pos += SCHEME_SEPARATOR.length();
+
+        final int end = run(text, pos, URL, MAX_URL_LENGTH, false);
+        return (end > pos) ? end : -1;
+    }
+
+    /**
+     * Find the e-mail address within the run of address characters starting at the given position.
+     * The run ends at the first character which is not an address character or starts an URL.
+     *
+     * @param text      Text to be scanned
+     * @param start     Start of the run
+     * @return          Start of the address in high and end of the address in low 32 bits
+     *                  or {@link #NO_MAIL} if the run doesn't contain the address
+     */
+    private static long findMail(final CharSequence text, final int start) {
+        final int at = run(text, start, MAIL, Integer.MAX_VALUE, true);
+        if ((at >= text.length()) || (text.charAt(at) != '@')) {
+            return NO_MAIL;
+        }
+
+        final int domain = at + 1;
+        final int domainEnd = run(text, domain, MAIL_DOMAIN, MAX_MAIL_DOMAIN_LENGTH, true);
+        final int end;
+
+        if (domainEnd == domain) {
+            return NO_MAIL;
+        } else if ((domainEnd < text.length()) && is(text.charAt(domainEnd), MAIL) && (urlEnd(text, domainEnd) < 0)) {
+            end = run(text, domainEnd, MAIL, MAX_MAIL_DOMAIN_LENGTH, true);
+        } else if (domainEnd - domain > 1) {
+            // The last domain character is taken by the trailing part of the address
+            end = domainEnd;
+        } else {
+            return NO_MAIL;
+        }
+
+        return ((long) Math.max(start, at - MAX_MAIL_LOCAL_LENGTH) << 32) | end;
+    }
+
+    private static int run(final CharSequence text, final int start, final byte charClass, final int maxLength,
+                           final boolean stopAtUrl) {
+        final int end = (maxLength < text.length() - start) ? (start + maxLength) : text.length();
+
+        int pos = start;
+        while ((pos < end) && is(text.charAt(pos), charClass) && (!stopAtUrl || (urlEnd(text, pos) < 0))) {
+            pos++;
+        }
+
+        return pos;
+    }
+
+    private static boolean startsWith(final CharSequence text, final int start, final String prefix) {
+        if (text.length() - start < prefix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
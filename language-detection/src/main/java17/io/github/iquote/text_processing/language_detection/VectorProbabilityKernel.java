@@ -0,0 +1,154 @@
+package io.github.iquote.text_processing.language_detection;
+
+/*
+ * Copyright (C) 2016 Konstantin Gusarov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ProbabilityKernel} implemented with the Java 17 Vector API. Multiplications and additions are done
+ * in the same order as in the scalar loops (no fused multiply-add), so updates and scores are bit-for-bit
+ * equal to the scalar ones. Loaded reflectively by {@link ProbabilityKernel#get()}.
+ *
+ * @author Konstantin Gusarov
+ */
+final class VectorProbabilityKernel extends ProbabilityKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Float species having as many lanes as {@link #DOUBLES}, so a float vector widens into a double one
+     */
+    private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class,
+            VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    VectorProbabilityKernel() {
+        if (DOUBLES.length() < 2) {
+            throw new UnsupportedOperationException("Double vectors have a single lane");
+        }
+    }
+
+    @Override
+    void update(final double[] prob, final double[] values, final int offset, final double scale) {
+        final int bound = DOUBLES.loopBound(prob.length);
+
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            final DoubleVector row = DoubleVector.fromArray(DOUBLES, values, offset + i);
+            DoubleVector.fromArray(DOUBLES, prob, i)
+                    .mul(row.mul(scale).add(1))
+                    .intoArray(prob, i);
+        }
+
+        for (; i < prob.length; i++) {
+            prob[i] *= 1 + values[offset + i] * scale;
+        }
+    }
+
+    @Override
+    void update(final double[] prob, final float[] values, final int offset, final double scale) {
+        final int bound = DOUBLES.loopBound(prob.length);
+
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            final DoubleVector row = widen(values, offset + i);
+            DoubleVector.fromArray(DOUBLES, prob, i)
+                    .mul(row.mul(scale).add(1))
+                    .intoArray(prob, i);
+        }
+
+        for (; i < prob.length; i++) {
+            prob[i] *= 1 + values[offset + i] * scale;
+        }
+    }
+
+    @Override
+    void accumulate(final double[] scores, final double[] table, final int offset, final double count) {
+        final int bound = DOUBLES.loopBound(scores.length);
+
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            final DoubleVector row = DoubleVector.fromArray(DOUBLES, table, offset + i);
+            DoubleVector.fromArray(DOUBLES, scores, i)
+                    .add(row.mul(count))
+                    .intoArray(scores, i);
+        }
+
+        for (; i < scores.length; i++) {
+            scores[i] += count * table[offset + i];
+        }
+    }
+
+    @Override
+    void accumulate(final double[] scores, final float[] table, final int offset, final double count) {
+        final int bound = DOUBLES.loopBound(scores.length);
+
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            final DoubleVector row = widen(table, offset + i);
+            DoubleVector.fromArray(DOUBLES, scores, i)
+                    .add(row.mul(count))
+                    .intoArray(scores, i);
+        }
+
+        for (; i < scores.length; i++) {
+            scores[i] += count * table[offset + i];
+        }
+    }
+
+    @Override
+    double normalize(final double[] prob) {
+        final int bound = DOUBLES.loopBound(prob.length);
+
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            sums = sums.add(DoubleVector.fromArray(DOUBLES, prob, i));
+        }
+
+        double probabilitySum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < prob.length; i++) {
+            probabilitySum += prob[i];
+        }
+
+        DoubleVector maxima = DoubleVector.zero(DOUBLES);
+        for (i = 0; i < bound; i += DOUBLES.length()) {
+            final DoubleVector p = DoubleVector.fromArray(DOUBLES, prob, i).div(probabilitySum);
+            maxima = maxima.max(p);
+            p.intoArray(prob, i);
+        }
+
+        double maxProbability = maxima.reduceLanes(VectorOperators.MAX);
+        for (; i < prob.length; i++) {
+            final double p = prob[i] / probabilitySum;
+            if (maxProbability < p) {
+                maxProbability = p;
+            }
+
+            prob[i] = p;
+        }
+
+        return maxProbability;
+    }
+
+    private static DoubleVector widen(final float[] values, final int offset) {
+        return (DoubleVector) FloatVector.fromArray(FLOATS, values, offset)
+                .convertShape(VectorOperators.F2D, DOUBLES, 0);
+    }
+}
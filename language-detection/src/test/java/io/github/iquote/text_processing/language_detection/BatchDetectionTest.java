@@ -0,0 +1,150 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class BatchDetectionTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchDetectionTest.class);
+
+    private static final DetectorFactory FACTORY = new DetectorFactory(true);
+    private static final int POOL_MESSAGE_COUNT = 2000;
+    private static final int MAX_POOL_THREADS = 4;
+    private static final String BENCHMARK_PROPERTY = "langdetect.benchmark";
+    private static final int BENCHMARK_MESSAGE_COUNT = 20000;
+
+    @Test
+    public void testDetectAllPreservesOrder() {
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        collectCorpus(texts, expected, 500);
+
+        assertEquals(expected, FACTORY.detectAll(texts));
+        assertEquals(expected, FACTORY.detectAll(new LinkedList<>(texts)));
+        assertEquals(expected, FACTORY.detectAll(texts.stream()));
+    }
+
+    @Test
+    public void testDetectAllWithExecutor() throws Exception {
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        collectCorpus(texts, expected, 500);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(expected, FACTORY.detectAll(texts, executor));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    public void testDetectAllReportsFeaturelessTextsAsUnknown() {
+        final List<String> texts = new ArrayList<>();
+        texts.add("1234 5678");
+        texts.add("confiscation of goods is assigned as the penalty part most of the courts consist of members");
+
+        final List<String> results = FACTORY.detectAll(texts);
+        assertEquals("unknown", results.get(0));
+        assertEquals("eng", results.get(1));
+    }
+
+    @Test
+    public void testDetectAllWithForkJoinPools() {
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        collectCorpus(texts, expected, POOL_MESSAGE_COUNT);
+
+        for (int threads = 1; threads <= MAX_POOL_THREADS; threads++) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+
+            try {
+                assertEquals(expected, FACTORY.detectAll(texts, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Throughput report rather than a test, it only runs with {@code -Dlangdetect.benchmark=true}. Nothing
+     * is asserted on timing: the numbers are meaningful on a quiet machine having several cores only.
+     */
+    @Test
+    public void benchmarkScaling() {
+        assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        collectCorpus(texts, expected, BENCHMARK_MESSAGE_COUNT);
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads++) {
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+
+            try {
+                // Warm up per-thread detectors of the pool before measuring
+                FACTORY.detectAll(texts.subList(0, 100 * threads), pool);
+
+                final long start = System.nanoTime();
+                final List<String> results = FACTORY.detectAll(texts, pool);
+                final long elapsed = System.nanoTime() - start;
+
+                assertEquals(expected, results);
+                LOGGER.info("{} thread(s) of {} processor(s): {} messages/sec", threads, processors,
+                        String.format("%.0f", texts.size() * 1e9 / elapsed));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testThreadsDontKeepFactories() throws Exception {
+        final List<String> texts = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        collectCorpus(texts, expected, 500);
+
+        DetectorFactory factory = ProfileRegistry.getFactory(true);
+        assertEquals(expected, factory.detectAll(texts));
+        assertEquals(expected.get(0), factory.detect(texts.get(0)));
+
+        final WeakReference<DetectorFactory> reference = new WeakReference<>(factory);
+        factory = null;
+
+        for (int i = 0; (i < 100) && (reference.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+    }
+
+    private static void collectCorpus(final List<String> texts, final List<String> expected, final int size) {
+        final Collection<Object[]> corpus = ShortMessageDetectorTest.data();
+
+        while (texts.size() < size) {
+            for (final Object[] row : corpus) {
+                if (texts.size() < size) {
+                    texts.add((String) row[1]);
+                    expected.add((String) row[2]);
+                }
+            }
+        }
+    }
+}
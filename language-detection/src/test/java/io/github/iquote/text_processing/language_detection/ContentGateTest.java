@@ -0,0 +1,99 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ContentGateTest {
+    @Test
+    public void testGateIsDisabledByDefault() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        assertNull(factory.getContentGate());
+    }
+
+    @Test
+    public void testRejectsFewLetters() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        final ContentGate gate = new ContentGate(3, 0);
+        factory.setContentGate(gate);
+        assertSame(gate, factory.getContentGate());
+
+        assertEquals(Detector.UNKNOWN_LANG, factory.detect("ok 12345 !!! ❤❤"));
+        assertEquals(DetectionResult.Status.UNKNOWN, factory.detectResult("@ab 42").getStatus());
+        assertEquals("deu", factory.detect("Dies ist ein deutscher Satz"));
+
+        assertEquals(3, gate.getCheckCount());
+        assertEquals(2, gate.getHitCount());
+        assertEquals(2.0 / 3, gate.getHitRate(), 1e-12);
+    }
+
+    @Test
+    public void testCountsSupplementaryLetters() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        final String text = "hello world \uD840\uDC00\uD840\uDC01\uD840\uDC02";
+
+        factory.setContentGate(new ContentGate(13, 0));
+        assertEquals(DetectionResult.Status.DETECTED, factory.detectResult(text).getStatus());
+
+        factory.setContentGate(new ContentGate(14, 0));
+        assertEquals(DetectionResult.Status.UNKNOWN, factory.detectResult(text).getStatus());
+    }
+
+    @Test
+    public void testRejectsFewDistinctNGrams() {
+        final Detector detector = new DetectorFactory(true).create();
+        final ContentGate gate = new ContentGate(0, 20);
+        detector.setContentGate(gate);
+
+        detector.append("aaaa aaaa aaaa aaaa");
+        assertEquals(Detector.UNKNOWN_LANG, detector.detect());
+        assertEquals(0, detector.getProbabilities().size());
+
+        detector.reset();
+        detector.append("Dies ist ein deutscher Satz");
+        assertEquals("deu", detector.detect());
+        assertEquals(1, gate.getHitCount());
+    }
+
+    @Test
+    public void testTextWithoutFeaturesIsNotChecked() {
+        final Detector detector = new DetectorFactory(true).create();
+        final ContentGate gate = new ContentGate(3, 3);
+        detector.setContentGate(gate);
+
+        detector.append("12345 http://example.com");
+        assertEquals(DetectionResult.Status.NO_FEATURES, detector.detectResult().getStatus());
+        assertEquals(0, gate.getCheckCount());
+    }
+
+    @Test
+    public void testAccuracy() {
+        final ContentGate gate = new ContentGate(3, 3);
+        assertAccuracy(true, ShortMessageDetectorTest.data(), gate);
+        assertAccuracy(false, NormalMessageDetectorTest.data(), gate);
+        assertEquals(0, gate.getHitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGate() {
+        new ContentGate(-1, 0);
+    }
+
+    private static void assertAccuracy(final boolean shortMessages, final Collection<Object[]> corpus,
+                                       final ContentGate gate) {
+        final DetectorFactory factory = ProfileRegistry.getFactory(shortMessages);
+
+        for (final Object[] row : corpus) {
+            final Detector detector = factory.create();
+            detector.setContentGate(gate);
+            detector.setSeed(0);
+            detector.append((String) row[1]);
+
+            assertEquals((String) row[1], row[2], detector.detect());
+        }
+    }
+}
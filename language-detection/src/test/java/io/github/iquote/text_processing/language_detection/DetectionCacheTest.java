@@ -0,0 +1,147 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DetectionCacheTest {
+    private static final DetectionCache.Result RESULT = new DetectionCache.Result(new int[]{1}, new double[]{0.9});
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        final DetectionCache cache = new DetectionCache(2, 1);
+        cache.put(1, RESULT);
+        cache.put(2, RESULT);
+        assertNotNull(cache.get(1));
+
+        cache.put(3, RESULT);
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedSize() {
+        final DetectionCache cache = new DetectionCache(100, 8);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(DetectionCache.key(1, "text " + i), RESULT);
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals(DetectionCache.key(1, "some text"), DetectionCache.key(1, new StringBuilder("some text")));
+        assertNotEquals(DetectionCache.key(1, "some text"), DetectionCache.key(2, "some text"));
+        assertNotEquals(DetectionCache.key(1, "some text"), DetectionCache.key(1, "some texts"));
+    }
+
+    @Test
+    public void testCachedDetection() {
+        final DetectorFactory factory = new DetectorFactory(false);
+        final DetectionCache cache = new DetectionCache(1000);
+        factory.setCache(cache);
+
+        final List<String> texts = NormalMessageDetectorTest.data().stream()
+                .map(row -> (String) row[1])
+                .collect(Collectors.toList());
+        final List<String> detected = texts.stream().map(factory::detect).collect(Collectors.toList());
+
+        assertEquals(texts.size(), cache.getMissCount());
+        assertEquals(detected, texts.stream().map(factory::detect).collect(Collectors.toList()));
+        assertEquals(texts.size(), cache.getHitCount());
+
+        final List<String> probabilities = new ArrayList<>();
+        factory.detectProbabilities(texts.get(0), (code, p) -> probabilities.add(code));
+        assertEquals(detected.get(0), probabilities.get(0));
+    }
+
+    @Test
+    public void testSharedCache() {
+        final DetectionCache cache = new DetectionCache(1000);
+        final DetectorFactory factory = new DetectorFactory(false);
+        final DetectorFactory view = ProfileRegistry.getFactory(false, Collections.singletonList("deu"));
+        factory.setCache(cache);
+        view.setCache(cache);
+
+        try {
+            assertEquals("eng", factory.detect("This is an english sentence"));
+            assertEquals("deu", view.detect("This is an english sentence"));
+            assertEquals(0, cache.getHitCount());
+        } finally {
+            view.setCache(null);
+        }
+    }
+
+    @Test
+    public void testSettingsChangeBypassesCachedResults() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        factory.setCache(new DetectionCache(10));
+        final String text = "Dies ist ein deutscher Satz";
+
+        factory.setContentGate(new ContentGate(100, 0));
+        assertEquals("unknown", factory.detect(text));
+        assertEquals("unknown", factory.detect(text));
+        assertEquals(1, factory.getCache().getHitCount());
+
+        factory.setContentGate(new ContentGate(3, 0));
+        assertEquals("deu", factory.detect(text));
+
+        factory.setTrialPolicy(TrialPolicy.ADAPTIVE);
+        assertEquals("deu", factory.detect(text));
+        assertEquals(1, factory.getCache().getHitCount());
+    }
+
+    @Test
+    public void testCachedTextWithoutFeatures() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        factory.setCache(new DetectionCache(10));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                factory.detect("12345");
+                fail("Text without features was detected");
+            } catch (final LangDetectException e) {
+                assertEquals(ErrorCode.CANNOT_DETECT, e.getCode());
+            }
+        }
+
+        assertEquals(1, factory.getCache().getHitCount());
+    }
+
+    @Test
+    public void testConcurrentDetection() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        final DetectionCache cache = new DetectionCache(16, 4);
+        factory.setCache(cache);
+
+        final List<String> texts = IntStream.range(0, 2000)
+                .mapToObj(i -> ((i % 2 == 0) ? "Das ist ein deutscher Satz " : "Это русское предложение ") + (i % 40))
+                .collect(Collectors.toList());
+        final List<String> detected = factory.detectAll(texts);
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals((i % 2 == 0) ? "deu" : "rus", detected.get(i));
+        }
+        assertEquals(texts.size(), cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 16);
+    }
+}
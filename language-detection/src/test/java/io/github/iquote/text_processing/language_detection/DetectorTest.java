@@ -11,9 +11,25 @@ import io.github.iquote.text_processing.language_detection.util.LangProfile;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DetectorTest {
     private static final String TRAINING_ENG = "a a a b b c c d e";
@@ -82,6 +98,436 @@ public class DetectorTest {
         assertEquals("jpn", detector.detect());
     }
 
+    @Test
+    public final void testExhaustiveScoring() throws LangDetectException {
+        assertEquals("eng", detectExhaustively("a"));
+        assertEquals("fra", detectExhaustively("b d"));
+        assertEquals("eng", detectExhaustively("d e"));
+        assertEquals("jpn", detectExhaustively("\u3042\u3042\u3042\u3042a"));
+    }
+
+    @Test(expected = LangDetectException.class)
+    public final void testExhaustiveScoringWithoutFeatures() throws LangDetectException {
+        detectExhaustively("1234");
+    }
+
+    @Test
+    public final void testStreamingDetect() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+
+        assertEquals("eng", detector.detect(new StringReader("a")));
+        assertEquals("fra", detector.detect(new StringReader("b d")));
+        assertEquals("jpn", detector.detect(new StringReader("\u3042\u3042\u3042\u3042a")));
+    }
+
+    @Test
+    public final void testStreamingDetectLongText() throws LangDetectException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("b d ");
+        }
+
+        final Detector detector = detectorFactory.create();
+        detector.setStreamingConfidence(2);
+        assertEquals("fra", detector.detect(new StringReader(text.toString())));
+        assertEquals(exhaustiveProbabilities(text.toString()).get(0).getCode(), detector.getProbabilities().get(0).getCode());
+    }
+
+    @Test
+    public final void testAppendAfterStreamingDetect() throws LangDetectException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("b d ");
+        }
+
+        final Detector detector = detectorFactory.create();
+        assertEquals("fra", detector.detect(new StringReader(text.toString())));
+
+        detector.append("a");
+        assertEquals("eng", detector.detect());
+
+        final Detector expected = detectorFactory.create();
+        expected.append("a");
+        assertEquals(expected.cacheKey(0), detector.cacheKey(0));
+    }
+
+    @Test
+    public final void testStreamingDetectBuffer() throws LangDetectException {
+        final CharBuffer buffer = CharBuffer.wrap("b d");
+        final Detector detector = detectorFactory.create();
+
+        assertEquals("fra", detector.detect(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = LangDetectException.class)
+    public final void testStreamingDetectWithoutFeatures() throws LangDetectException {
+        detectorFactory.create().detect(new StringReader("1234"));
+    }
+
+    @Test
+    public final void testStreamingDetectReadFailure() {
+        final Reader reader = new Reader() {
+            @Override
+            public int read(final char[] buffer, final int offset, final int length) throws IOException {
+                throw new IOException("boom");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            detectorFactory.create().detect(reader);
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.CANNOT_READ_TEXT, e.getCode());
+            return;
+        }
+
+        throw new AssertionError("Read failure was not reported");
+    }
+
+    @Test
+    public final void testReset() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+
+        detector.append("b d");
+        assertEquals("fra", detector.detect());
+
+        detector.reset();
+        detector.append("\u3042\u3042\u3042\u3042a");
+        assertEquals("jpn", detector.detect());
+    }
+
+    @Test
+    public final void testIncrementalAppend() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+
+        detector.append("\u3042\u3042");
+        detector.append("\u3042\u3042");
+        assertEquals("jpn", detector.detect());
+
+        detector.append("a");
+        assertEquals(exhaustiveProbabilities("\u3042\u3042\u3042\u3042a").toString(),
+                detector.getProbabilities().toString());
+    }
+
+    @Test
+    public final void testIncrementalAppendCorpus() throws LangDetectException {
+        final DetectorFactory factory = ProfileRegistry.getFactory(true);
+
+        for (final Object[] row : ShortMessageDetectorTest.data()) {
+            final String text = ((String) row[1]).replaceAll(" +", " ");
+
+            final Detector whole = factory.create();
+            whole.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+            whole.append(text);
+
+            final Detector parts = factory.create();
+            parts.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+            for (final String part : text.split("(?<= )")) {
+                parts.append(part);
+            }
+
+            assertEquals(text, whole.getProbabilities().toString(), parts.getProbabilities().toString());
+        }
+    }
+
+    @Test
+    public final void testMaxTextLengthAppliesToWholeText() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+        detector.setMaxTextLength(3);
+
+        detector.append("b d");
+        detector.append(" a a a a a a");
+        assertEquals("fra", detector.detect());
+
+        final Detector expected = detectorFactory.create();
+        expected.append("b d");
+        assertEquals(expected.cacheKey(0), detector.cacheKey(0));
+    }
+
+    @Test
+    public final void testAppendCharSequence() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+
+        detector.append(new StringBuilder("b d"));
+        assertEquals("fra", detector.detect());
+
+        detector.reset();
+        detector.append(CharBuffer.wrap("\u3042\u3042\u3042\u3042a"));
+        assertEquals("jpn", detector.detect());
+    }
+
+    @Test
+    public final void testAppendUtf8() throws LangDetectException {
+        final String text = "\u3042\u3042 http://example.com \u3042\u3042a";
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        final ByteBuffer heap = ByteBuffer.wrap(bytes);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        final Detector expected = detectorFactory.create();
+        expected.append(text);
+
+        for (final ByteBuffer buffer : new ByteBuffer[]{heap, direct}) {
+            final Detector detector = detectorFactory.create();
+            detector.append(buffer);
+
+            assertEquals(0, buffer.position());
+            assertEquals(expected.cacheKey(0), detector.cacheKey(0));
+            assertEquals("jpn", detector.detect());
+        }
+    }
+
+    @Test
+    public final void testAppendMalformedUtf8() throws LangDetectException {
+        final Detector detector = detectorFactory.create();
+        detector.append(ByteBuffer.wrap(new byte[]{'b', ' ', (byte) 0xC3, ' ', 'd'}));
+
+        final Detector expected = detectorFactory.create();
+        expected.append("b \ufffd d");
+
+        assertEquals(expected.cacheKey(0), detector.cacheKey(0));
+        assertEquals("fra", detector.detect());
+    }
+
+    @Test
+    public final void testDetectResult() {
+        final Detector detector = detectorFactory.create();
+
+        detector.append("b d");
+        final DetectionResult result = detector.detectResult();
+        assertEquals(DetectionResult.Status.DETECTED, result.getStatus());
+        assertEquals("fra", result.getLanguage());
+        assertTrue(result.getProbability() > 0.5);
+
+        detector.reset();
+        detector.append("1234 http://example.com");
+        assertEquals(DetectionResult.Status.NO_FEATURES, detector.detectResult().getStatus());
+        assertEquals("unknown", detector.detectResult().getLanguage());
+    }
+
+    @Test
+    public final void testDetectResultTopLanguages() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+        final DetectionResult result = new DetectionResult(3);
+        final Detector detector = factory.create();
+
+        for (final Object[] row : NormalMessageDetectorTest.data()) {
+            detector.reset();
+            detector.append((String) row[1]);
+
+            final List<Language> expected = detector.getProbabilities();
+            assertSame(result, detector.detectResult(result));
+            assertEquals(Math.min(3, expected.size()), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(expected.get(i).getCode(), result.getLanguage(i));
+                assertEquals(expected.get(i).getProbability(), result.getProbability(i), 0);
+                assertEquals(factory.getLanguageId(result.getLanguage(i)), result.getLanguageId(i));
+            }
+
+            assertEquals(detector.detect(), result.getLanguage());
+        }
+    }
+
+    @Test
+    public final void testDetectResultReuse() {
+        final DetectionResult result = new DetectionResult(2);
+
+        detectorFactory.detectResult("b d", result);
+        assertTrue(result.isDetected());
+        assertEquals(detectorFactory.getLanguageId("fra"), result.getLanguageId());
+        assertEquals("fra", detectorFactory.getLanguage(result.getLanguageId()));
+
+        detectorFactory.detectResult("1234", result);
+        assertEquals(DetectionResult.Status.NO_FEATURES, result.getStatus());
+        assertEquals(0, result.size());
+        assertEquals(-1, result.getLanguageId());
+        assertEquals("unknown", result.getLanguage());
+        assertEquals(-1, detectorFactory.getLanguageId("xxx"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testDetectResultCapacity() {
+        new DetectionResult(0);
+    }
+
+    @Test
+    public final void testDetectWithinBudget() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+
+        for (final Object[] row : NormalMessageDetectorTest.data()) {
+            detector.reset();
+            detector.append((String) row[1]);
+
+            final DetectionResult result = detector.detect(Duration.ofMinutes(1));
+            assertFalse(result.isCutShort());
+            assertEquals(row[2], result.getLanguage());
+        }
+    }
+
+    @Test
+    public final void testDetectAfterDeadline() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.append("Dies ist ein deutscher Satz, der etwas länger ist als die anderen");
+
+        final DetectionResult result = detector.detect(System.nanoTime() - 1);
+        assertTrue(result.isCutShort());
+        assertTrue(result.getProbability() < 1);
+
+        assertEquals("deu", detector.detect());
+        assertFalse(detector.detect(System.nanoTime() - 1).isCutShort());
+    }
+
+    @Test
+    public final void testDetectExhaustivelyAfterDeadline() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.append("Dies ist ein deutscher Satz");
+
+        final DetectionResult result = detector.detect(System.nanoTime() - 1);
+        assertTrue(result.isCutShort());
+        assertEquals(DetectionResult.Status.UNKNOWN, result.getStatus());
+        assertEquals("deu", detector.detect());
+    }
+
+    @Test
+    public final void testDetectWithHugeBudget() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.append("Dies ist ein deutscher Satz");
+
+        for (final Duration budget : Arrays.asList(ChronoUnit.FOREVER.getDuration(),
+                Duration.ofNanos(Long.MAX_VALUE), Duration.ofNanos(Long.MAX_VALUE / 2 + 1))) {
+            final DetectionResult result = detector.detect(budget);
+            assertFalse(result.isCutShort());
+            assertEquals("deu", result.getLanguage());
+        }
+
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+        assertFalse(factory.detectResult("Dies ist ein deutscher Satz", ChronoUnit.FOREVER.getDuration())
+                .isCutShort());
+    }
+
+    @Test
+    public final void testDetectWithNegativeBudget() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.append("Dies ist ein deutscher Satz, der etwas länger ist als die anderen");
+
+        for (final Duration budget : Arrays.asList(Duration.ofNanos(-1), Duration.ofNanos(Long.MIN_VALUE),
+                ChronoUnit.FOREVER.getDuration().negated())) {
+            assertTrue(detector.detect(budget).isCutShort());
+        }
+
+        final DetectorFactory factory = new DetectorFactory(false);
+        assertTrue(factory.detectResult("Dies ist ein deutscher Satz", ChronoUnit.FOREVER.getDuration().negated())
+                .isCutShort());
+    }
+
+    @Test
+    public final void testDetectCancelled() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+        final CancellationToken token = new CancellationToken();
+        final DetectionResult result = new DetectionResult();
+        final long deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+
+        factory.detectResult("Ceci est une phrase en français", deadline, token, result);
+        assertFalse(result.isCutShort());
+        assertEquals("fra", result.getLanguage());
+
+        token.cancel();
+        factory.detectResult("Esta es una frase en español", deadline, token, result);
+        assertTrue(result.isCutShort());
+    }
+
+    @Test
+    public final void testCutShortResultIsNotCached() {
+        final DetectorFactory factory = new DetectorFactory(false);
+        factory.setCache(new DetectionCache(16));
+        final String text = "Dies ist ein deutscher Satz";
+
+        assertTrue(factory.detectResult(text, Duration.ofNanos(-1)).isCutShort());
+        assertEquals(0, factory.getCache().getHitCount());
+
+        assertFalse(factory.detectResult(text, Duration.ofMinutes(1)).isCutShort());
+        assertFalse(factory.detectResult(text, Duration.ofNanos(-1)).isCutShort());
+        assertEquals(1, factory.getCache().getHitCount());
+        assertEquals("deu", factory.detectResult(text, Duration.ofNanos(-1)).getLanguage());
+    }
+
+    @Test
+    public final void testNoFeaturesExceptionIsStackless() {
+        final Detector detector = detectorFactory.create();
+        detector.append("1234");
+
+        try {
+            detector.detect();
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.CANNOT_DETECT, e.getCode());
+            assertEquals(0, e.getStackTrace().length);
+            return;
+        }
+
+        throw new AssertionError("Text without features was detected");
+    }
+
+    @Test
+    public final void testFactoryDetectResult() {
+        assertEquals("jpn", detectorFactory.detectResult("\u3042\u3042\u3042\u3042a").getLanguage());
+        assertEquals(DetectionResult.Status.NO_FEATURES, detectorFactory.detectResult("1234").getStatus());
+
+        detectorFactory.setCache(new DetectionCache(16));
+        assertEquals(DetectionResult.Status.NO_FEATURES, detectorFactory.detectResult("1234").getStatus());
+        assertEquals(DetectionResult.Status.NO_FEATURES, detectorFactory.detectResult("1234").getStatus());
+        assertEquals("fra", detectorFactory.detectResult("b d").getLanguage());
+        assertEquals(1, detectorFactory.getCache().getHitCount());
+    }
+
+    @Test
+    public final void testFactoryDetect() throws LangDetectException {
+        assertEquals("eng", detectorFactory.detect("a"));
+        assertEquals("fra", detectorFactory.detect("b d"));
+        assertEquals("eng", detectorFactory.detect("d e"));
+        assertEquals("jpn", detectorFactory.detect("\u3042\u3042\u3042\u3042a"));
+    }
+
+    @Test
+    public final void testFactoryDetectProbabilities() throws LangDetectException {
+        final List<String> codes = new ArrayList<>();
+        final List<Double> probabilities = new ArrayList<>();
+
+        detectorFactory.detectProbabilities("\u3042\u3042\u3042\u3042a", (code, probability) -> {
+            codes.add(code);
+            probabilities.add(probability);
+        });
+
+        assertEquals(1, codes.size());
+        assertEquals("jpn", codes.get(0));
+        assertTrue(probabilities.get(0) > 0.99);
+    }
+
+    @Test
+    public final void testFactoryDetectConcurrently() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String text = (i % 2 == 0) ? "b d" : "\u3042\u3042\u3042\u3042a";
+                results.add(executor.submit(() -> detectorFactory.detect(text)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals((i % 2 == 0) ? "fra" : "jpn", results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public final void testLangList() throws LangDetectException {
         final List<String> langList = detectorFactory.getLangList();
@@ -98,4 +544,20 @@ public class DetectorTest {
 
         langList.add("hoge");
     }
-}
\ No newline at end of file
+
+    private List<Language> exhaustiveProbabilities(final String text) {
+        final Detector detector = detectorFactory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.setMaxTextLength(Integer.MAX_VALUE);
+        detector.append(text);
+        return detector.getProbabilities();
+    }
+
+    private String detectExhaustively(final String text) {
+        final Detector detector = detectorFactory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.append(text);
+
+        return detector.detect();
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class ExhaustiveScoringDetectorTest {
+    private static final DetectorFactory SHORT_MESSAGE_FACTORY = new DetectorFactory(true);
+    private static final DetectorFactory NORMAL_MESSAGE_FACTORY = new DetectorFactory(false);
+
+    @Parameterized.Parameters(name = "{index} - {0}: Detector.detect() = {2}")
+    public static Collection<Object[]> data() {
+        final Stream<Object[]> shortMessages = ShortMessageDetectorTest.data().stream()
+                .map(row -> new Object[]{row[0], row[1], row[2], SHORT_MESSAGE_FACTORY});
+        final Stream<Object[]> normalMessages = NormalMessageDetectorTest.data().stream()
+                .map(row -> new Object[]{row[0], row[1], row[2], NORMAL_MESSAGE_FACTORY});
+
+        return Stream.concat(shortMessages, normalMessages).collect(Collectors.toList());
+    }
+
+    private final String languageName;
+    private final String s;
+    private final String expectedLang;
+    private final DetectorFactory detectorFactory;
+
+    public ExhaustiveScoringDetectorTest(final String languageName, final String s, final String expectedLang,
+                                         final DetectorFactory detectorFactory) {
+        this.languageName = languageName;
+        this.s = s;
+        this.expectedLang = expectedLang;
+        this.detectorFactory = detectorFactory;
+    }
+
+    @Test
+    public void testLanguageDetection() throws Exception {
+        final Detector detector = detectorFactory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.append(s);
+
+        assertEquals("Language should equal to " + languageName, expectedLang, detector.detect());
+    }
+
+    @Test
+    public void testStreamingDetection() throws Exception {
+        final Detector detector = detectorFactory.create();
+
+        assertEquals("Language should equal to " + languageName, expectedLang, detector.detect(new StringReader(s)));
+    }
+
+    @Test
+    public void testDeterministicResults() throws Exception {
+        final Detector first = detectorFactory.create();
+        first.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        first.append(s);
+
+        final Detector second = detectorFactory.create();
+        second.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        second.append(s);
+
+        final List<Language> expected = first.getProbabilities();
+        final List<Language> actual = second.getProbabilities();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCode(), actual.get(i).getCode());
+            assertEquals(expected.get(i).getProbability(), actual.get(i).getProbability(), 0);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the vectorized kernel available on Java 17+ with the scalar one
+ */
+public class ProbabilityKernelTest {
+    private static final int[] LENGTHS = {1, 3, 8, 47, 53};
+
+    private final Random random = new Random(42);
+    private ProbabilityKernel kernel;
+
+    @Before
+    public void setUp() {
+        kernel = ProbabilityKernel.get();
+        assumeTrue("Vectorized kernel is not available", kernel != ProbabilityKernel.SCALAR);
+    }
+
+    @Test
+    public void testUpdate() {
+        for (final int length : LENGTHS) {
+            final double[] values = randomValues(length + 5);
+            final float[] floats = toFloats(values);
+            final double[] prob = randomValues(length);
+
+            final double[] expected = prob.clone();
+            final double[] actual = prob.clone();
+            ProbabilityKernel.SCALAR.update(expected, values, 5, 20000);
+            kernel.update(actual, values, 5, 20000);
+            assertArrayEquals(expected, actual, 0);
+
+            ProbabilityKernel.SCALAR.update(expected, floats, 3, 20000);
+            kernel.update(actual, floats, 3, 20000);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    public void testAccumulate() {
+        for (final int length : LENGTHS) {
+            final double[] table = randomValues(length + 5);
+            final float[] floats = toFloats(table);
+
+            final double[] expected = new double[length];
+            final double[] actual = new double[length];
+            ProbabilityKernel.SCALAR.accumulate(expected, table, 2, 3);
+            kernel.accumulate(actual, table, 2, 3);
+            assertArrayEquals(expected, actual, 0);
+
+            ProbabilityKernel.SCALAR.accumulate(expected, floats, 4, 2);
+            kernel.accumulate(actual, floats, 4, 2);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    public void testNormalize() {
+        for (final int length : LENGTHS) {
+            final double[] expected = randomValues(length);
+            final double[] actual = expected.clone();
+
+            assertEquals(ProbabilityKernel.SCALAR.normalize(expected), kernel.normalize(actual), 1e-15);
+            assertArrayEquals(expected, actual, 1e-15);
+        }
+    }
+
+    @Test
+    public void testShortMessageDetection() {
+        assertSameDetection(ProfileRegistry.getFactory(true), ShortMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testNormalMessageDetection() {
+        assertSameDetection(ProfileRegistry.getFactory(false), NormalMessageDetectorTest.data());
+    }
+
+    private void assertSameDetection(final DetectorFactory factory, final Collection<Object[]> corpus) {
+        for (final ScoringEngine engine : ScoringEngine.values()) {
+            for (final Object[] row : corpus) {
+                assertEquals(engine + " " + row[0], detect(factory, engine, ProbabilityKernel.SCALAR, row),
+                        detect(factory, engine, kernel, row));
+            }
+        }
+    }
+
+    private static String detect(final DetectorFactory factory, final ScoringEngine engine,
+                                 final ProbabilityKernel kernel, final Object[] row) {
+        final Detector detector = factory.create();
+        detector.setScoringEngine(engine);
+        detector.setKernel(kernel);
+        detector.setSeed(0L);
+        detector.append((String) row[1]);
+
+        return detector.detect();
+    }
+
+    private double[] randomValues(final int length) {
+        final double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble() / 100;
+        }
+
+        return values;
+    }
+
+    private static float[] toFloats(final double[] values) {
+        final float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+
+        return floats;
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProbabilityMatrixTest {
+    private static final double WEIGHT = Detector.DEFAULT_WEIGHT;
+
+    /**
+     * Row 0 is dense, rows 1 and 3 are sparse, row 2 is empty
+     */
+    private static final double[][] DATA = {
+            {0.1, 0.2, 0.3, 0.4, 0.5, 0, 0, 0},
+            {0, 0, 0, 0, 0, 0, 0.25, 0},
+            {0, 0, 0, 0, 0, 0, 0, 0},
+            {0.05, 0, 0, 0, 0, 0, 0, 0.01}
+    };
+
+    @Test
+    public void testLayout() {
+        final ProbabilityMatrix matrix = build();
+
+        assertTrue(matrix.denseOffsets[0] >= 0);
+        assertEquals(-1, matrix.denseOffsets[1]);
+        assertEquals(-1, matrix.denseOffsets[3]);
+        assertEquals(3, matrix.postingColumns.length);
+        assertEquals(DATA[0].length + 3, matrix.valueCount());
+
+        assertFalse(matrix.isEmpty(1));
+        assertTrue(matrix.isEmpty(2));
+    }
+
+    @Test
+    public void testGet() {
+        for (final ProbabilityStorage storage : new ProbabilityStorage[]{ProbabilityStorage.DOUBLE,
+                ProbabilityStorage.FLOAT}) {
+            final ProbabilityMatrix matrix = ProbabilityMatrix.convert(build(), storage);
+
+            for (int row = 0; row < DATA.length; row++) {
+                for (int column = 0; column < DATA[row].length; column++) {
+                    assertEquals(DATA[row][column], matrix.get(row, column), 1e-7);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testForEach() {
+        final List<Integer> columns = new ArrayList<>();
+        build().forEach(3, (column, p) -> columns.add(column));
+
+        assertEquals(Arrays.asList(0, 7), columns);
+    }
+
+    @Test
+    public void testUpdateMatchesDenseSmoothing() {
+        for (final ProbabilityStorage storage : ProbabilityStorage.values()) {
+            final ProbabilityMatrix matrix = ProbabilityMatrix.convert(build(), storage);
+
+            for (int row = 0; row < DATA.length; row++) {
+                final double[] expected = new double[DATA[row].length];
+                final double[] actual = new double[DATA[row].length];
+                Arrays.fill(expected, 1.0 / expected.length);
+                Arrays.fill(actual, 1.0 / actual.length);
+
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] *= WEIGHT + matrix.get(row, i);
+                }
+                matrix.update(actual, row, WEIGHT, ProbabilityKernel.SCALAR);
+
+                assertArrayEquals(storage + " row " + row, normalize(expected), normalize(actual), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testActiveUpdate() {
+        final int[] active = {1, 3, 7};
+
+        for (final ProbabilityStorage storage : ProbabilityStorage.values()) {
+            final ProbabilityMatrix matrix = ProbabilityMatrix.convert(build(), storage);
+
+            for (int row = 0; row < DATA.length; row++) {
+                final double[] expected = new double[DATA[row].length];
+                final double[] actual = new double[DATA[row].length];
+                for (final int i : active) {
+                    expected[i] = 1.0 / active.length;
+                    actual[i] = 1.0 / active.length;
+                }
+
+                matrix.update(expected, row, WEIGHT, ProbabilityKernel.SCALAR);
+                matrix.update(actual, row, WEIGHT, ProbabilityKernel.SCALAR, active, active.length);
+
+                assertArrayEquals(storage + " row " + row, expected, actual, 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLogScorer() {
+        final ProbabilityMatrix matrix = build();
+        final double[] scores = new double[DATA[0].length];
+
+        matrix.getLogScorer(WEIGHT).accumulate(scores, 3, 2, ProbabilityKernel.SCALAR);
+
+        for (int i = 0; i < scores.length; i++) {
+            assertEquals(2 * Math.log1p(DATA[3][i] / WEIGHT), scores[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void testOnlyDefaultLogScorerIsCached() {
+        final double weight = 0.7 / 10000;
+
+        for (final ProbabilityStorage storage : ProbabilityStorage.values()) {
+            final ProbabilityMatrix matrix = ProbabilityMatrix.convert(build(), storage);
+            assertSame(storage.toString(), matrix.getLogScorer(WEIGHT), matrix.getLogScorer(WEIGHT));
+            assertNotSame(storage.toString(), matrix.getLogScorer(weight), matrix.getLogScorer(weight));
+
+            for (int row = 0; row < DATA.length; row++) {
+                final double[] expected = new double[DATA[0].length];
+                final double[] actual = new double[DATA[0].length];
+
+                for (int column = 0; column < expected.length; column++) {
+                    expected[column] = 2 * Math.log1p(matrix.get(row, column) / weight);
+                }
+                matrix.getLogScorer(weight).accumulate(actual, row, 2, ProbabilityKernel.SCALAR);
+
+                assertArrayEquals(storage + " row " + row, expected, actual, 0);
+            }
+        }
+    }
+
+    @Test
+    public void testDirectBufferMatrix() {
+        final ProbabilityMatrix heap = build();
+        final DoubleBuffer values = ByteBuffer.allocateDirect(heap.valueCount() * Double.BYTES).asDoubleBuffer();
+        for (int i = 0; i < heap.valueCount(); i++) {
+            values.put(i, heap.value(i));
+        }
+
+        final ProbabilityMatrix direct = ProbabilityMatrix.of(heap.columns, heap.denseOffsets, heap.postingStarts,
+                heap.postingColumns, values);
+        assertEquals(heap.memoryUsage(), direct.memoryUsage());
+
+        for (int row = 0; row < DATA.length; row++) {
+            final double[] expected = new double[DATA[0].length];
+            final double[] actual = new double[DATA[0].length];
+            Arrays.fill(expected, 1);
+            Arrays.fill(actual, 1);
+
+            heap.update(expected, row, WEIGHT, ProbabilityKernel.get());
+            direct.update(actual, row, WEIGHT, ProbabilityKernel.get());
+            heap.getLogScorer(WEIGHT).accumulate(expected, row, 2, ProbabilityKernel.get());
+            direct.getLogScorer(WEIGHT).accumulate(actual, row, 2, ProbabilityKernel.get());
+
+            assertArrayEquals("row " + row, expected, actual, 0);
+        }
+    }
+
+    private static ProbabilityMatrix build() {
+        final ProbabilityMatrix.Builder builder = new ProbabilityMatrix.Builder(DATA[0].length);
+
+        for (int column = DATA[0].length - 1; column >= 0; column--) {
+            for (int row = 0; row < DATA.length; row++) {
+                builder.add(row, column, DATA[row][column]);
+            }
+        }
+
+        return builder.build(DATA.length);
+    }
+
+    private static double[] normalize(final double[] prob) {
+        final double sum = Arrays.stream(prob).sum();
+        return Arrays.stream(prob).map(p -> p / sum).toArray();
+    }
+}
@@ -0,0 +1,191 @@
+package io.github.iquote.text_processing.language_detection;
+
+import io.github.iquote.text_processing.language_detection.util.NGramDictionary;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+public class ProfileCompilerTest {
+    private static Path profileDirectory;
+    private static DetectorFactory jsonFactory;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        profileDirectory = Paths.get(DetectorFactory.class.getResource("nr").toURI());
+        jsonFactory = ProfileCompiler.readProfiles(profileDirectory);
+    }
+
+    @Test
+    public void testCompiledProfilesMatchJson() throws Exception {
+        final DetectorFactory compiled = new DetectorFactory(compile());
+
+        assertEquals(jsonFactory.getLangList(), compiled.getLangList());
+        assertEquals(jsonFactory.dictionary.size(), compiled.dictionary.size());
+
+        final int languageCount = jsonFactory.languageCount;
+        for (int row = 0; row < jsonFactory.dictionary.size(); row++) {
+            final int compiledRow = compiled.dictionary.get(jsonFactory.dictionary.keyAt(row));
+            assertNotEquals(NGramDictionary.NOT_FOUND, compiledRow);
+
+            for (int i = 0; i < languageCount; i++) {
+                assertEquals(jsonFactory.matrix.get(row, i), compiled.matrix.get(compiledRow, i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledProfilesDetection() throws Exception {
+        final DetectorFactory compiled = new DetectorFactory(compile());
+
+        for (final String text : new String[]{"This is an english sentence", "Dies ist ein deutscher Satz",
+                "Это русское предложение"}) {
+            final Detector expected = jsonFactory.create();
+            expected.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+            expected.append(text);
+
+            final Detector actual = compiled.create();
+            actual.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+            actual.append(text);
+
+            assertEquals(expected.detect(), actual.detect());
+            assertEquals(expected.getProbabilities().get(0).getProbability(),
+                    actual.getProbabilities().get(0).getProbability(), 0);
+        }
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        final Path file = compile();
+        final byte[] data = Files.readAllBytes(file);
+        data[data.length - 1] ^= 1;
+        Files.write(file, data);
+
+        assertFormatError(file);
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        final Path file = compile();
+        final byte[] data = Files.readAllBytes(file);
+        ByteBuffer.wrap(data).putInt(4, ProfileCompiler.VERSION + 1);
+        Files.write(file, data);
+
+        assertFormatError(file);
+    }
+
+    @Test
+    public void testInvalidFile() throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertFormatError(file);
+    }
+
+    @Test
+    public void testExternalProfileDirectory() throws Exception {
+        final Path root = createProfileRoot();
+        ProfileCompiler.compileAll(root, Collections.singletonList("nr"));
+
+        final DetectorFactory factory = new DetectorFactory(root, false);
+        assertEquals(Arrays.asList("deu", "eng", "rus"), factory.getLangList());
+        assertEquals("eng", factory.detect("This is an english sentence"));
+    }
+
+    @Test
+    public void testExternalJsonProfiles() throws Exception {
+        final Path root = createProfileRoot();
+        ProfileCompiler.compileAll(root, Collections.singletonList("nr"));
+        removeCompiledEntries(root);
+        Files.delete(root.resolve("nr.bin"));
+
+        final DetectorFactory factory = new DetectorFactory(root, false);
+        assertEquals(Arrays.asList("deu", "eng", "rus"), factory.getLangList());
+        assertEquals("deu", factory.detect("Dies ist ein deutscher Satz"));
+    }
+
+    @Test
+    public void testIndexChecksumMismatch() throws Exception {
+        final Path root = createProfileRoot();
+        ProfileCompiler.compileAll(root, Collections.singletonList("nr"));
+        removeCompiledEntries(root);
+        Files.copy(profileDirectory.resolve("fra.json"), root.resolve("nr/eng.json"), StandardCopyOption.REPLACE_EXISTING);
+
+        try {
+            new DetectorFactory(root, false);
+            fail("Modified profile was loaded");
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.FORMAT, e.getCode());
+        }
+    }
+
+    @Test
+    public void testMissingProfileSet() throws Exception {
+        final Path root = createProfileRoot();
+        ProfileCompiler.compileAll(root, Collections.singletonList("nr"));
+
+        try {
+            new DetectorFactory(root, true);
+            fail("Missing profile set was loaded");
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.PROFILE_NOT_LOADED, e.getCode());
+        }
+    }
+
+    private Path createProfileRoot() throws Exception {
+        final Path root = folder.newFolder().toPath();
+        final Path profiles = Files.createDirectory(root.resolve("nr"));
+
+        for (final String language : new String[]{"deu", "eng", "rus"}) {
+            Files.copy(profileDirectory.resolve(language + ".json"), profiles.resolve(language + ".json"));
+        }
+
+        return root;
+    }
+
+    private static void removeCompiledEntries(final Path root) throws Exception {
+        final Path file = root.resolve(ProfileIndex.FILE_NAME);
+        final ProfileIndex index;
+        try (final Reader reader = Files.newBufferedReader(file)) {
+            index = ProfileIndex.read(reader);
+        }
+
+        try (final Writer writer = Files.newBufferedWriter(file)) {
+            new ProfileIndex(index.getProfiles("nr")).write(writer);
+        }
+    }
+
+    private Path compile() throws Exception {
+        final Path file = folder.newFile().toPath();
+        ProfileCompiler.compile(profileDirectory, file);
+
+        return file;
+    }
+
+    private static void assertFormatError(final Path file) {
+        try {
+            new DetectorFactory(file);
+            fail("Invalid compiled profile file was loaded");
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.FORMAT, e.getCode());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileIndexTest {
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final ProfileIndex index = new ProfileIndex(Arrays.asList(
+                new ProfileIndex.Entry("sm", "eng", "sm/eng.json", 100, 0xcafebabeL),
+                new ProfileIndex.Entry("sm", "fra", "sm/fra.json", 200, 0x1L),
+                new ProfileIndex.Entry("sm", null, "sm.bin", 250, 0xffffffffL)));
+
+        final StringWriter writer = new StringWriter();
+        index.write(writer);
+        final ProfileIndex read = ProfileIndex.read(new StringReader(writer.toString()));
+
+        final List<ProfileIndex.Entry> profiles = read.getProfiles("sm");
+        assertEquals(2, profiles.size());
+        assertEquals("eng", profiles.get(0).language);
+        assertEquals("sm/eng.json", profiles.get(0).path);
+        assertEquals(100, profiles.get(0).nGramCount);
+        assertEquals(0xcafebabeL, profiles.get(0).checksum);
+
+        final ProfileIndex.Entry compiled = read.getCompiled("sm");
+        assertTrue(compiled.isCompiled());
+        assertEquals("sm.bin", compiled.path);
+        assertEquals(0xffffffffL, compiled.checksum);
+
+        assertNull(read.getCompiled("nr"));
+        assertTrue(read.getProfiles("nr").isEmpty());
+    }
+
+    @Test
+    public void testCommentsAndEmptyLines() throws Exception {
+        final ProfileIndex index = ProfileIndex.read(new StringReader("# comment\n\n  profile nr eng nr/eng.json 1 a\n"));
+
+        assertEquals(1, index.getEntries().size());
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testMalformedEntry() throws Exception {
+        ProfileIndex.read(new StringReader("profile nr eng nr/eng.json"));
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testMalformedChecksum() throws Exception {
+        ProfileIndex.read(new StringReader("compiled nr nr.bin 1 xyz"));
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.iquote.text_processing.language_detection;
+
+import io.github.iquote.text_processing.language_detection.util.NGram;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ProfileRegistryTest {
+    @Test
+    public void testSharedProfiles() {
+        for (final boolean shortMessages : new boolean[]{true, false}) {
+            final DetectorFactory first = ProfileRegistry.getFactory(shortMessages);
+            final DetectorFactory second = ProfileRegistry.getFactory(shortMessages);
+
+            assertNotSame(first, second);
+            assertSame(first.dictionary, second.dictionary);
+            assertSame(first.matrix, second.matrix);
+            assertSame(first.getScriptRouter(), second.getScriptRouter());
+        }
+    }
+
+    @Test
+    public void testSharedView() {
+        final DetectorFactory view = ProfileRegistry.getFactory(false, Arrays.asList("eng", "deu", "fra"));
+        final DetectorFactory other = ProfileRegistry.getFactory(false, Arrays.asList("fra", "deu", "eng", "eng"));
+
+        assertNotSame(view, other);
+        assertSame(view.matrix, other.matrix);
+        assertSame(ProfileRegistry.getFactory(false).dictionary, view.dictionary);
+        assertEquals(Arrays.asList("deu", "eng", "fra"), view.getLangList());
+    }
+
+    @Test
+    public void testIndependentSettings() {
+        final DetectorFactory tuned = ProfileRegistry.getFactory(true);
+        tuned.setCache(new DetectionCache(16));
+        tuned.setTrialPolicy(TrialPolicy.ADAPTIVE);
+        tuned.setContentGate(new ContentGate(100, 0));
+
+        final DetectorFactory other = ProfileRegistry.getFactory(true);
+        assertNull(other.getCache());
+        assertSame(TrialPolicy.FIXED, other.getTrialPolicy());
+        assertNull(other.getContentGate());
+
+        assertEquals("unknown", tuned.detect("Dies ist ein deutscher Satz"));
+        assertEquals("deu", other.detect("Dies ist ein deutscher Satz"));
+    }
+
+    @Test
+    public void testViewsAreBounded() {
+        final List<String> languages = ProfileRegistry.getFactory(true).getLangList();
+        for (int i = 1; i <= ProfileRegistry.MAX_VIEWS + 1; i++) {
+            final DetectorFactory view = ProfileRegistry.getFactory(true, Arrays.asList(languages.get(0), languages.get(i)));
+            assertEquals(2, view.getLangList().size());
+        }
+
+        assertEquals(ProfileRegistry.MAX_VIEWS, ProfileRegistry.getViewCount());
+    }
+
+    @Test
+    public void testViewDetection() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+        final DetectorFactory view = ProfileRegistry.getFactory(false, Arrays.asList("eng", "deu", "fra", "spa", "rus"));
+
+        for (final String text : new String[]{"This is an english sentence", "Dies ist ein deutscher Satz",
+                "Ceci est une phrase en français", "Esta es una frase en español", "Это русское предложение"}) {
+            assertEquals(detectExhaustively(factory, text), detectExhaustively(view, text));
+        }
+    }
+
+    @Test
+    public void testViewProbabilities() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(true);
+        final DetectorFactory view = ProfileRegistry.getFactory(true, Arrays.asList("eng", "jpn"));
+        final int row = factory.rowOf(NGram.pack("th"));
+
+        assertEquals(factory.matrix.get(row, factory.languages.indexOf("eng")), view.matrix.get(row, 0), 0);
+        assertEquals(factory.matrix.get(row, factory.languages.indexOf("jpn")), view.matrix.get(row, 1), 0);
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testViewWithoutFeatures() {
+        final DetectorFactory view = ProfileRegistry.getFactory(false, Collections.singletonList("eng"));
+        view.detect("สวัสดี");
+    }
+
+    @Test
+    public void testUnknownLanguage() {
+        try {
+            ProfileRegistry.getFactory(false, Arrays.asList("eng", "xxx"));
+            fail("Unknown language was accepted");
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.INIT_PARAM, e.getCode());
+        }
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testEmptySubset() {
+        ProfileRegistry.getFactory(false, Collections.emptyList());
+    }
+
+    private static String detectExhaustively(final DetectorFactory factory, final String text) {
+        final Detector detector = factory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.append(text);
+
+        return detector.detect();
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.iquote.text_processing.language_detection;
+
+import io.github.iquote.text_processing.language_detection.langdetect.LangProfileDocument;
+import io.github.iquote.text_processing.language_detection.util.LangProfile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProfileTrainerTest {
+    private static final String ENGLISH = "This is an english sentence\r\nThe quick brown fox jumps over the lazy dog\n"
+            + "\nAnother line of english text\rWith an old style line break\n";
+    private static final String GERMAN = "Dies ist ein deutscher Satz\nDer schnelle braune Fuchs springt über den Hund";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChunkedTraining() throws Exception {
+        final Path corpus = folder.newFolder("corpus").toPath();
+        final Path eng = Files.createDirectory(corpus.resolve("eng"));
+        final Path deu = Files.createDirectory(corpus.resolve("deu"));
+        final Path lat = Files.createDirectory(corpus.resolve("lat"));
+        final String english = repeat(ENGLISH, 50);
+        final String german = repeat(GERMAN + '\n', 50);
+
+        Files.write(eng.resolve("a.txt"), english.getBytes(StandardCharsets.UTF_8));
+        Files.write(eng.resolve("b.txt"), english.getBytes(StandardCharsets.UTF_8));
+        Files.write(eng.resolve("readme.md"), "Not a corpus".getBytes(StandardCharsets.UTF_8));
+        try (final OutputStream os = new GZIPOutputStream(Files.newOutputStream(deu.resolve("a.txt.gz")))) {
+            os.write(german.getBytes(StandardCharsets.UTF_8));
+        }
+        try (final InputStream is = getClass().getClassLoader().getResourceAsStream("lorem.xml.gz")) {
+            Files.copy(is, lat.resolve("abstract.xml.gz"));
+        }
+
+        final List<LangProfileDocument> documents = new ProfileTrainer(4, 64).train(corpus);
+        assertEquals(3, documents.size());
+
+        assertProfile(expected("deu", german), documents.get(0));
+        assertProfile(expected("eng", english + english), documents.get(1));
+
+        final LangProfileDocument lorem;
+        try (final InputStream is = getClass().getClassLoader().getResourceAsStream("lorem.xml.gz")) {
+            lorem = new LanguageProfileGenerator().loadFromWikipediaAbstract("lat", is, true);
+        }
+        final LangProfile latin = new LangProfile(lorem);
+        latin.omitLessFreq();
+        assertProfile(latin.toDocument(), documents.get(2));
+    }
+
+    @Test
+    public void testProfilesAreWrittenAndCompiled() throws Exception {
+        final Path corpus = folder.newFolder("corpus").toPath();
+        Files.write(Files.createDirectory(corpus.resolve("eng")).resolve("eng.txt"),
+                repeat(ENGLISH, 20).getBytes(StandardCharsets.UTF_8));
+        Files.write(Files.createDirectory(corpus.resolve("deu")).resolve("deu.txt"),
+                repeat(GERMAN + '\n', 20).getBytes(StandardCharsets.UTF_8));
+
+        final Path profiles = folder.getRoot().toPath().resolve("profiles").resolve("nr");
+        new ProfileTrainer(2).train(corpus, profiles);
+
+        assertEquals(Arrays.asList("deu", "eng"), ProfileCompiler.readProfiles(profiles).getLangList());
+
+        final DetectorFactory factory = new DetectorFactory(profiles.resolveSibling("nr.bin"));
+        assertEquals(Arrays.asList("deu", "eng"), factory.getLangList());
+        assertEquals("deu", factory.detect("Der Fuchs springt"));
+    }
+
+    @Test
+    public void testInvalidXml() throws Exception {
+        final Path corpus = folder.newFolder("corpus").toPath();
+        Files.write(Files.createDirectory(corpus.resolve("eng")).resolve("abstract.xml"),
+                "<feed><abstract>".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            new ProfileTrainer(2).train(corpus);
+            fail("Invalid XML was accepted");
+        } catch (final LangDetectException e) {
+            assertEquals(ErrorCode.TRAIN_DATA_FORMAT, e.getCode());
+        }
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testInvalidThreads() {
+        new ProfileTrainer(0);
+    }
+
+    private static LangProfileDocument expected(final String language, final String text) throws IOException {
+        final LangProfileDocument document = new LanguageProfileGenerator().loadFromText(language,
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        final LangProfile profile = new LangProfile(document);
+        profile.omitLessFreq();
+
+        return profile.toDocument();
+    }
+
+    private static void assertProfile(final LangProfileDocument expected, final LangProfileDocument actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expected.getnGramCount(), actual.getnGramCount());
+        assertEquals(expected.getFrequencies(), actual.getFrequencies());
+    }
+
+    private static String repeat(final String text, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(text);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PruningTest {
+    private static final double PRUNING_FLOOR = 1e-20;
+
+    @Test
+    public void testShortMessages() {
+        assertSameResults(true, ShortMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testNormalMessages() {
+        assertSameResults(false, NormalMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testRoutedPrior() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.setPruningFloor(PRUNING_FLOOR);
+        detector.append("Это русское предложение");
+
+        assertEquals("rus", detector.detect());
+    }
+
+    @Test(expected = LangDetectException.class)
+    public void testInvalidFloor() {
+        ProfileRegistry.getFactory(true).create().setPruningFloor(1);
+    }
+
+    private static void assertSameResults(final boolean shortMessages, final Collection<Object[]> corpus) {
+        final DetectorFactory factory = ProfileRegistry.getFactory(shortMessages);
+
+        for (final Object[] row : corpus) {
+            final String text = (String) row[1];
+
+            final Detector reference = factory.create();
+            reference.setSeed(0);
+            reference.append(text);
+
+            final Detector pruned = factory.create();
+            pruned.setPruningFloor(PRUNING_FLOOR);
+            pruned.setSeed(0);
+            pruned.append(text);
+
+            final List<Language> expected = reference.getProbabilities();
+            final List<Language> actual = pruned.getProbabilities();
+
+            assertEquals(text, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(text, expected.get(i).getCode(), actual.get(i).getCode());
+                assertEquals(text, expected.get(i).getProbability(), actual.get(i).getProbability(), 1e-9);
+            }
+        }
+    }
+}
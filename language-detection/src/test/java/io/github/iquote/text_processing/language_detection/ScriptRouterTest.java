@@ -0,0 +1,144 @@
+package io.github.iquote.text_processing.language_detection;
+
+import io.github.iquote.text_processing.language_detection.util.CharacterTable;
+
+import org.junit.Test;
+
+import java.lang.Character.UnicodeScript;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScriptRouterTest {
+    @Test
+    public void testSingleLanguageScripts() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+
+        assertEquals(Arrays.asList("ell"), owners(factory, UnicodeScript.GREEK));
+        assertEquals(Arrays.asList("kor"), owners(factory, UnicodeScript.HANGUL));
+        assertEquals(Arrays.asList("tha"), owners(factory, UnicodeScript.THAI));
+        assertEquals(Arrays.asList("pan"), owners(factory, UnicodeScript.GURMUKHI));
+    }
+
+    @Test
+    public void testSharedScripts() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+
+        assertEquals(Arrays.asList("bul", "mkd", "rus", "ukr"), owners(factory, UnicodeScript.CYRILLIC));
+        assertEquals(Arrays.asList("ara", "fas", "urd"), owners(factory, UnicodeScript.ARABIC));
+        assertEquals(Arrays.asList("hin", "mar", "nep"), owners(factory, UnicodeScript.DEVANAGARI));
+        assertTrue(owners(factory, UnicodeScript.HAN).containsAll(Arrays.asList("chi_sim", "chi_tra", "jpn")));
+    }
+
+    @Test
+    public void testViewOwners() {
+        final DetectorFactory view = ProfileRegistry.getFactory(false, Arrays.asList("eng", "rus"));
+
+        assertEquals(Arrays.asList("rus"), owners(view, UnicodeScript.CYRILLIC));
+        assertEquals(Arrays.asList(), owners(view, UnicodeScript.GREEK));
+    }
+
+    @Test
+    public void testRoute() {
+        final ScriptRouter router = ProfileRegistry.getFactory(false).getScriptRouter();
+
+        assertEquals(1, router.route(count("Αυτή είναι μια ελληνική πρόταση 123!")).length);
+        assertNull(router.route(count("Mixed text: Это русское предложение")));
+        assertNull(router.route(count("12345 !!! ???")));
+    }
+
+    @Test
+    public void testSingleLanguageShortCircuit() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.append("Αυτή είναι μια ελληνική πρόταση");
+
+        assertEquals(1, detector.getProbabilities().size());
+        assertEquals("ell", detector.getProbabilities().get(0).getCode());
+        assertEquals(1.0, detector.getProbabilities().get(0).getProbability(), 0);
+    }
+
+    @Test
+    public void testNoFeaturesWithRouting() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+
+        for (final boolean routing : new boolean[] {false, true}) {
+            final Detector detector = factory.create();
+            detector.setScriptRouting(routing);
+            detector.append("\u03E1\u03DF\u03DD");
+
+            assertEquals(DetectionResult.Status.NO_FEATURES, detector.detectResult().getStatus());
+        }
+    }
+
+    @Test
+    public void testFamilyRestriction() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(false);
+        final List<String> cyrillic = owners(factory, UnicodeScript.CYRILLIC);
+
+        for (final ScoringEngine engine : ScoringEngine.values()) {
+            final Detector detector = factory.create();
+            detector.setScoringEngine(engine);
+            detector.append("Это русское предложение");
+
+            for (final Language language : detector.getProbabilities()) {
+                assertTrue(language.getCode(), cyrillic.contains(language.getCode()));
+            }
+        }
+    }
+
+    @Test
+    public void testZeroPriorDisablesRouting() {
+        final Detector detector = ProfileRegistry.getFactory(false).create();
+        detector.setPriorMap(Collections.singletonMap("eng", 1.0));
+        detector.append("Αυτή είναι μια ελληνική πρόταση");
+
+        assertEquals("eng", detector.detect());
+    }
+
+    @Test
+    public void testShortMessageCorpus() {
+        assertSameDetection(ProfileRegistry.getFactory(true), ShortMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testNormalMessageCorpus() {
+        assertSameDetection(ProfileRegistry.getFactory(false), NormalMessageDetectorTest.data());
+    }
+
+    private static void assertSameDetection(final DetectorFactory factory, final Collection<Object[]> corpus) {
+        for (final Object[] row : corpus) {
+            assertEquals(row[0].toString(), detect(factory, (String) row[1], false),
+                    detect(factory, (String) row[1], true));
+        }
+    }
+
+    private static String detect(final DetectorFactory factory, final String text, final boolean routing) {
+        final Detector detector = factory.create();
+        detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+        detector.setScriptRouting(routing);
+        detector.append(text);
+
+        return detector.detect();
+    }
+
+    private static List<String> owners(final DetectorFactory factory, final UnicodeScript script) {
+        return Arrays.stream(factory.getScriptRouter().getOwners(script))
+                .mapToObj(factory.languages::get)
+                .collect(Collectors.toList());
+    }
+
+    private static int[] count(final String text) {
+        final int[] counts = new int[CharacterTable.SCRIPT_COUNT];
+        for (int i = 0; i < text.length(); i++) {
+            counts[CharacterTable.scriptId(text.charAt(i))]++;
+        }
+
+        return counts;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reports detection accuracy and matrix size of every {@link ProbabilityStorage} mode on the
+ * {@link ShortMessageDetectorTest} and {@link NormalMessageDetectorTest} corpora
+ */
+public class StorageAccuracyReportTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageAccuracyReportTest.class);
+
+    /**
+     * Maximal amount of corpus messages quantized modes may detect differently from {@link ProbabilityStorage#DOUBLE}
+     */
+    private static final int MAX_QUANTIZED_8_MISSES = 2;
+
+    @Test
+    public void testShortMessageAccuracy() {
+        report(true, ShortMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testNormalMessageAccuracy() {
+        report(false, NormalMessageDetectorTest.data());
+    }
+
+    private static void report(final boolean shortMessages, final Collection<Object[]> corpus) {
+        final int reference = countCorrect(new DetectorFactory(shortMessages), corpus);
+
+        for (final ProbabilityStorage storage : ProbabilityStorage.values()) {
+            final DetectorFactory factory = new DetectorFactory(shortMessages, storage);
+            final int correct = countCorrect(factory, corpus);
+
+            LOGGER.info("{} profiles, {}: {}/{} correct ({} %), matrix size {} KiB", shortMessages ? "sm" : "nr",
+                    storage, correct, corpus.size(), String.format("%.1f", 100.0 * correct / corpus.size()),
+                    factory.matrix.memoryUsage() / 1024);
+
+            if (storage == ProbabilityStorage.QUANTIZED_8) {
+                assertTrue(storage + " accuracy is too low", correct >= reference - MAX_QUANTIZED_8_MISSES);
+            } else {
+                assertEquals(storage + " accuracy differs", reference, correct);
+            }
+        }
+    }
+
+    private static int countCorrect(final DetectorFactory factory, final Collection<Object[]> corpus) {
+        int correct = 0;
+
+        for (final Object[] row : corpus) {
+            final Detector detector = factory.create();
+            detector.setScoringEngine(ScoringEngine.EXHAUSTIVE);
+            detector.append((String) row[1]);
+
+            if (row[2].equals(detector.detect())) {
+                correct++;
+            }
+        }
+
+        return correct;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.iquote.text_processing.language_detection;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TrialPolicyTest {
+    private static final String TEXT = "Dies ist ein deutscher Satz";
+
+    @Test
+    public void testFixedPolicyIsDefault() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(true);
+        assertSame(TrialPolicy.FIXED, factory.getTrialPolicy());
+
+        final Detector fixed = factory.create();
+        fixed.setTrialPolicy(TrialPolicy.FIXED);
+
+        assertEquals(probabilities(factory.create(), TEXT).toString(), probabilities(fixed, TEXT).toString());
+    }
+
+    @Test
+    public void testEarlyStop() {
+        final DetectorFactory factory = ProfileRegistry.getFactory(true);
+
+        final Detector twoTrials = factory.create();
+        twoTrials.setTrialPolicy(new TrialPolicy(2, 2, 0, 0));
+
+        // Top language of the first two trials is the same and any variance is accepted
+        final Detector adaptive = factory.create();
+        adaptive.setTrialPolicy(new TrialPolicy(2, 7, 1, 0));
+
+        final List<Language> expected = probabilities(twoTrials, TEXT);
+        final List<Language> actual = probabilities(adaptive, TEXT);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCode(), actual.get(i).getCode());
+            assertEquals(expected.get(i).getProbability(), actual.get(i).getProbability(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testAdaptiveAccuracy() {
+        assertAccuracy(true, ShortMessageDetectorTest.data());
+        assertAccuracy(false, NormalMessageDetectorTest.data());
+    }
+
+    @Test
+    public void testFactoryPolicy() {
+        final DetectorFactory factory = new DetectorFactory(true);
+        factory.setTrialPolicy(TrialPolicy.ADAPTIVE);
+
+        assertSame(TrialPolicy.ADAPTIVE, factory.getTrialPolicy());
+        assertEquals("deu", factory.detect(TEXT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTrials() {
+        new TrialPolicy(3, 2, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVariance() {
+        new TrialPolicy(1, 2, -1, 0);
+    }
+
+    private static void assertAccuracy(final boolean shortMessages, final Collection<Object[]> corpus) {
+        final DetectorFactory factory = ProfileRegistry.getFactory(shortMessages);
+
+        for (final Object[] row : corpus) {
+            final Detector detector = factory.create();
+            detector.setTrialPolicy(TrialPolicy.ADAPTIVE);
+            detector.setSeed(0);
+            detector.append((String) row[1]);
+
+            assertEquals((String) row[1], row[2], detector.detect());
+        }
+    }
+
+    private static List<Language> probabilities(final Detector detector, final String text) {
+        detector.setSeed(0);
+        detector.append(text);
+        return detector.getProbabilities();
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CharacterTableTest {
+    @Test
+    public void testLatin() {
+        assertTrue(CharacterTable.isLatin('A'));
+        assertTrue(CharacterTable.isLatin('z'));
+        assertTrue(CharacterTable.isLatin('_'));
+        assertFalse(CharacterTable.isLatin('@'));
+        assertFalse(CharacterTable.isLatin('{'));
+        assertFalse(CharacterTable.isLatin('\u00e9'));
+    }
+
+    @Test
+    public void testNonLatin() {
+        assertFalse(CharacterTable.isNonLatin('a'));
+        assertFalse(CharacterTable.isNonLatin('\u00e9'));
+        assertTrue(CharacterTable.isNonLatin('\u0300'));
+        assertTrue(CharacterTable.isNonLatin('\u0430'));
+        assertTrue(CharacterTable.isNonLatin('\u3042'));
+        assertFalse(CharacterTable.isNonLatin('\u1ea0'));
+    }
+
+    @Test
+    public void testSeparator() {
+        assertTrue(CharacterTable.isSeparator(' '));
+        assertTrue(CharacterTable.isSeparator('1'));
+        assertTrue(CharacterTable.isSeparator('\u2010'));
+        assertTrue(CharacterTable.isSeparator('\u00a0'));
+        assertFalse(CharacterTable.isSeparator('a'));
+        assertFalse(CharacterTable.isSeparator('\u4e03'));
+    }
+
+    @Test
+    public void testLetter() {
+        assertTrue(CharacterTable.isLetter('a'));
+        assertTrue(CharacterTable.isLetter('\u00e9'));
+        assertTrue(CharacterTable.isLetter('\u4e03'));
+        assertFalse(CharacterTable.isLetter('1'));
+        assertFalse(CharacterTable.isLetter('!'));
+        assertFalse(CharacterTable.isLetter(' '));
+        assertFalse(CharacterTable.isLetter('\u2764'));
+        assertFalse(CharacterTable.isLetter('\ud83d'));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals('\u4e01', CharacterTable.normalize('\u4e03'));
+        assertEquals('\uac00', CharacterTable.normalize('\uac01'));
+        assertEquals('\u015f', CharacterTable.normalize('\u0219'));
+        assertEquals(NGram.normalize('\u30a4'), CharacterTable.normalize('\u30a4'));
+    }
+
+    @Test
+    public void testGeneratedTablesMatchComputedOnes() {
+        assertNotNull(CharacterTable.class.getResource(CharacterTableGenerator.FILE_NAME));
+
+        final int size = Character.MAX_VALUE + 1;
+        final char[] normalized = new char[size];
+        final byte[] flags = new byte[size];
+        final byte[] scriptIds = new byte[size];
+        CharacterTableGenerator.compute(normalized, flags, scriptIds);
+
+        for (int i = 0; i < size; i++) {
+            final char ch = (char) i;
+            assertEquals(normalized[i], CharacterTable.normalize(ch));
+            assertEquals((flags[i] & CharacterTable.LATIN) != 0, CharacterTable.isLatin(ch));
+            assertEquals((flags[i] & CharacterTable.NON_LATIN) != 0, CharacterTable.isNonLatin(ch));
+            assertEquals((flags[i] & CharacterTable.SEPARATOR) != 0, CharacterTable.isSeparator(ch));
+            assertEquals((flags[i] & CharacterTable.LETTER) != 0, CharacterTable.isLetter(ch));
+            assertEquals(scriptIds[i] & 0xFF, CharacterTable.scriptId(ch));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.iquote.text_processing.language_detection.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -29,6 +30,28 @@ public class LangProfileTest {
         assertNull(profile.frequencies.get("abcd"));
     }
 
+    @Test
+    public final void testMerge() {
+        final LangProfile profile = new LangProfile("eng");
+        profile.update("abc");
+
+        final LangProfile other = new LangProfile("eng");
+        other.update("bcd");
+        profile.merge(other);
+
+        final LangProfile expected = new LangProfile("eng");
+        expected.update("abc");
+        expected.update("bcd");
+
+        assertEquals(expected.frequencies, profile.frequencies);
+        assertArrayEquals(expected.nGramCount, profile.nGramCount);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testMergeOtherLanguage() {
+        new LangProfile("eng").merge(new LangProfile("fra"));
+    }
+
     @Test
     public final void testOmitLessFreq() {
         final LangProfile profile = new TestLangProfile(new int[]{0, 0, 0});
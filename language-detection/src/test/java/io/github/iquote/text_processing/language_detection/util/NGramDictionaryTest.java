@@ -0,0 +1,45 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class NGramDictionaryTest {
+    @Test
+    public void testAddAndGet() {
+        final NGramDictionary dictionary = new NGramDictionary(2);
+
+        assertEquals(0, dictionary.add(NGram.pack("a")));
+        assertEquals(1, dictionary.add(NGram.pack(" a")));
+        assertEquals(2, dictionary.add(NGram.pack("abc")));
+        assertEquals(0, dictionary.add(NGram.pack("a")));
+
+        assertEquals(3, dictionary.size());
+        assertEquals(0, dictionary.get(NGram.pack("a")));
+        assertEquals(1, dictionary.get(NGram.pack(" a")));
+        assertEquals(2, dictionary.get(NGram.pack("abc")));
+        assertEquals(NGramDictionary.NOT_FOUND, dictionary.get(NGram.pack("b")));
+        assertEquals(NGramDictionary.NOT_FOUND, dictionary.get(NGram.INVALID_KEY));
+    }
+
+    @Test
+    public void testGrowth() {
+        final NGramDictionary dictionary = new NGramDictionary(1);
+
+        for (char c = '一'; c < '怀'; c++) {
+            assertEquals(c - '一', dictionary.add(NGram.pack(Character.toString(c))));
+        }
+
+        for (char c = '一'; c < '怀'; c++) {
+            final int row = dictionary.get(NGram.pack(Character.toString(c)));
+
+            assertEquals(c - '一', row);
+            assertEquals(Character.toString(c), NGram.unpack(dictionary.keyAt(row)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddInvalidKey() {
+        new NGramDictionary().add(NGram.INVALID_KEY);
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import io.github.iquote.text_processing.language_detection.util.NGram;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 
 public final class NGramTest {
@@ -80,6 +81,55 @@ public final class NGramTest {
         assertNull(ngram.get(3));
     }
 
+    @Test
+    public void testNGramKey() {
+        final NGram ngram = new NGram();
+        assertEquals(NGram.INVALID_KEY, ngram.getKey(1));
+
+        ngram.addChar('A');
+        assertEquals(NGram.pack("A"), ngram.getKey(1));
+        assertEquals(NGram.pack(" A"), ngram.getKey(2));
+        assertEquals(NGram.INVALID_KEY, ngram.getKey(3));
+
+        ngram.addChar('\u06cc');
+        ngram.addChar('1');
+        assertEquals(NGram.INVALID_KEY, ngram.getKey(1));
+        assertEquals(NGram.pack("\u064a "), ngram.getKey(2));
+        assertEquals(NGram.pack("A\u064a "), ngram.getKey(3));
+        assertEquals(NGram.INVALID_KEY, ngram.getKey(4));
+    }
+
+    @Test
+    public void testReset() {
+        final NGram ngram = new NGram();
+        ngram.addChar('a');
+        ngram.addChar('b');
+        ngram.addChar('c');
+        ngram.addChar('d');
+        assertEquals("bcd", ngram.get(3));
+
+        ngram.reset();
+        assertNull(ngram.get(1));
+        assertNull(ngram.get(2));
+
+        ngram.addChar('e');
+        assertEquals("e", ngram.get(1));
+        assertEquals(" e", ngram.get(2));
+        assertNull(ngram.get(3));
+    }
+
+    @Test
+    public void testPack() {
+        assertEquals(NGram.INVALID_KEY, NGram.pack(""));
+        assertEquals(NGram.INVALID_KEY, NGram.pack("abcd"));
+        assertNotEquals(NGram.pack("a"), NGram.pack("\u0000a"));
+        assertNotEquals(NGram.pack(" a"), NGram.pack("  a"));
+
+        for (final String gram : new String[]{"a", " a", "a ", "ab", " ab", "\u3042\u30a2\u3105", "\uffff\uffff\uffff"}) {
+            assertEquals(gram, NGram.unpack(NGram.pack(gram)));
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testIllegalArgumentConstructorInvocation0() {
         TestLangProfile.construct(new int[0]);
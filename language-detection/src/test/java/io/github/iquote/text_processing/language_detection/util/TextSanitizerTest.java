@@ -0,0 +1,132 @@
+package io.github.iquote.text_processing.language_detection.util;
+
+import io.github.iquote.text_processing.language_detection.NormalMessageDetectorTest;
+import io.github.iquote.text_processing.language_detection.ShortMessageDetectorTest;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextSanitizerTest {
+    private static final Pattern URL_REGEX = Pattern.compile("https?://[-_.?&~;+=/#0-9A-Za-z]{1,2076}");
+    private static final Pattern MAIL_REGEX = Pattern.compile("[-_.0-9A-Za-z]{1,64}@[-_0-9A-Za-z]{1,255}[-_.0-9A-Za-z]{1,255}");
+
+    private static final String FUZZ_ALPHABET = "htps:/@.-_#?aeo \u01a1\u0301\u0323\u0430";
+
+    @Test
+    public void testUrl() {
+        assertSanitized("see http://example.com/a?b=c#d now");
+        assertSanitized("see https://example.com now");
+        assertSanitized("httpss://example.com http:// https://x");
+        assertSanitized("xhttp://example.com:8080/path");
+    }
+
+    @Test
+    public void testMail() {
+        assertSanitized("mail john.doe@example.com please");
+        assertSanitized("a@b a@bc a@b.c @example.com user@ user@.com");
+        assertSanitized("user@example.com.ru.");
+        assertSanitized("userhttp://x@example.com user@exhttp://ample.com");
+        assertSanitized(repeat('a', 100) + "@" + repeat('b', 300) + "." + repeat('c', 300) + " end");
+        assertSanitized(repeat('a', 10) + "@" + repeat('b', 255) + " end");
+    }
+
+    @Test
+    public void testVietnamese() {
+        assertSanitized("Việt Nam có cá á́");
+        assertSanitized("mail a@bó óhttp://x");
+    }
+
+    @Test
+    public void testSpaces() {
+        assertSanitized("  a   b  http://x  c@d.e   ");
+        assertSanitized("");
+    }
+
+    @Test
+    public void testMaxLength() {
+        final String text = "Viẹt  http://example.com  Nam mail@example.com ok";
+
+        for (int maxLength = 0; maxLength <= text.length(); maxLength++) {
+            assertSanitized(text, maxLength);
+        }
+    }
+
+    @Test
+    public void testCharBuffer() {
+        final String text = "Viẹt http://example.com Nam";
+        final StringBuilder actual = new StringBuilder();
+        TextSanitizer.sanitize(CharBuffer.wrap(text.toCharArray()), actual, Integer.MAX_VALUE);
+
+        assertEquals(reference(text, Integer.MAX_VALUE), actual.toString());
+    }
+
+    @Test
+    public void testCorpora() {
+        for (final Object[] row : ShortMessageDetectorTest.data()) {
+            assertSanitized((String) row[1]);
+        }
+
+        for (final Object[] row : NormalMessageDetectorTest.data()) {
+            assertSanitized((String) row[1]);
+        }
+    }
+
+    @Test
+    public void testRandomText() {
+        final Random random = new Random(0);
+
+        for (int n = 0; n < 20000; n++) {
+            final char[] text = new char[random.nextInt(40)];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = FUZZ_ALPHABET.charAt(random.nextInt(FUZZ_ALPHABET.length()));
+            }
+
+            assertSanitized(new String(text));
+        }
+    }
+
+    private static void assertSanitized(final String text) {
+        assertSanitized(text, Integer.MAX_VALUE);
+    }
+
+    private static void assertSanitized(final String text, final int maxLength) {
+        final StringBuilder actual = new StringBuilder();
+        TextSanitizer.sanitize(text, actual, maxLength);
+
+        assertEquals(text, reference(text, maxLength), actual.toString());
+    }
+
+    /**
+     * Regular expression based sanitization the scanner has to match
+     */
+    private static String reference(final String text, final int maxLength) {
+        String sanitized = URL_REGEX.matcher(text).replaceAll(" ");
+        sanitized = MAIL_REGEX.matcher(sanitized).replaceAll(" ");
+        sanitized = NGram.normalizeVietnamese(sanitized);
+
+        final StringBuilder sb = new StringBuilder();
+        char pre = 0;
+        for (int i = 0; i < sanitized.length() && i < maxLength; i++) {
+            final char c = sanitized.charAt(i);
+            if ((c != ' ') || (pre != ' ')) {
+                sb.append(c);
+            }
+
+            pre = c;
+        }
+
+        return sb.toString();
+    }
+
+    private static String repeat(final char c, final int count) {
+        final char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -4,9 +4,10 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
-import io.github.iquote.text_processing.language_detection.Detector;
+import io.github.iquote.text_processing.language_detection.DetectionResult;
 import io.github.iquote.text_processing.language_detection.DetectorFactory;
 import io.github.iquote.text_processing.language_detection.LangDetectException;
+import io.github.iquote.text_processing.language_detection.ProfileRegistry;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -43,6 +44,7 @@ import org.apache.lucene.analysis.tr.TurkishAnalyzer;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -61,7 +63,8 @@ import static org.apache.lucene.analysis.miscellaneous.WordDelimiterFilter.PRESE
  *          can be found it is being used to produce term stream that is considered result of the term extraction
  *     </li>
  *     <li>
- *          Otherwise {@code org.apache.lucene.analysis.standard.StandardAnalyzer} is being used for term stream production
+ *          Otherwise, including texts without valid language features such as digits or URLs only,
+ *          {@code org.apache.lucene.analysis.standard.StandardAnalyzer} is being used for term stream production
  *     </li>
  * </ul>
  *
@@ -98,18 +101,39 @@ public class TermExtractionService {
         ANALYZERS_BY_LANGUAGE.put("tur", TurkishAnalyzer::new);
     }
 
+    private static final Supplier<Analyzer> DEFAULT_ANALYZER = StandardAnalyzer::new;
+
+    private final ThreadLocal<DetectionResult> detectionResult = ThreadLocal.withInitial(DetectionResult::new);
     private final DetectorFactory detectorFactory;
-    private final Map<String, Supplier<Analyzer>> analyzers;
+    private final List<Supplier<Analyzer>> analyzers;
 
     /**
-     * Create new {@code TermExtractionService}
+     * Create new {@code TermExtractionService}. Language profiles are shared with other services through
+     * {@link ProfileRegistry}.
      *
      * @param shortMessages             Should this term extraction service use short message profiles
      * @throws TextAnalysisException    In case language {@code com.cybozu.labs.langdetect.DetectorFactory} fails to initialize
      */
     public TermExtractionService(final boolean shortMessages) {
         try {
-            detectorFactory = new DetectorFactory(shortMessages);
+            detectorFactory = ProfileRegistry.getFactory(shortMessages);
+            analyzers = initializeAnalyzers();
+        } catch (final LangDetectException e) {
+            throw new TextAnalysisException("Failed to create language detector factory", e);
+        }
+    }
+
+    /**
+     * Create new {@code TermExtractionService} which detects only the given languages
+     *
+     * @param shortMessages             Should this term extraction service use short message profiles
+     * @param languages                 Languages to be detected
+     * @throws TextAnalysisException    In case language {@code com.cybozu.labs.langdetect.DetectorFactory} fails to
+     *                                  initialize or there are no profiles for some of the languages
+     */
+    public TermExtractionService(final boolean shortMessages, final Collection<String> languages) {
+        try {
+            detectorFactory = ProfileRegistry.getFactory(shortMessages, languages);
             analyzers = initializeAnalyzers();
         } catch (final LangDetectException e) {
             throw new TextAnalysisException("Failed to create language detector factory", e);
@@ -125,18 +149,16 @@ public class TermExtractionService {
      *                                  itself
      */
     public List<String> getTerms(final String text) {
-        final String language;
+        final DetectionResult result;
 
         try {
-            final Detector detector = detectorFactory.create();
-            detector.append(text);
-
-            language = detector.detect();
+            result = detectorFactory.detectResult(text, detectionResult.get());
         } catch (final LangDetectException e) {
             throw new TextAnalysisException("Failed to detect language for " + text, e);
         }
 
-        final Supplier<Analyzer> analyzerSupplier = analyzers.getOrDefault(language, StandardAnalyzer::new);
+        final int languageId = result.getLanguageId();
+        final Supplier<Analyzer> analyzerSupplier = (languageId < 0) ? DEFAULT_ANALYZER : analyzers.get(languageId);
         return tokenizeString(analyzerSupplier, text);
     }
 
@@ -164,15 +186,18 @@ public class TermExtractionService {
     }
 
 
-    private Map<String, Supplier<Analyzer>> initializeAnalyzers() {
-        final Map<String, Supplier<Analyzer>> result = Maps.newHashMap();
+    /**
+     * Build analyzer suppliers indexed by language ids of the detector factory
+     */
+    private List<Supplier<Analyzer>> initializeAnalyzers() {
         final List<String> languages = detectorFactory.getLangList();
+        final List<Supplier<Analyzer>> result = Lists.newArrayListWithCapacity(languages.size());
 
         for (final String language : languages) {
-            final Supplier<Analyzer> analyzer = ANALYZERS_BY_LANGUAGE.getOrDefault(language, StandardAnalyzer::new);
-            result.put(language, analyzer);
+            final Supplier<Analyzer> analyzer = ANALYZERS_BY_LANGUAGE.getOrDefault(language, DEFAULT_ANALYZER);
+            result.add(analyzer);
         }
 
-        return Collections.unmodifiableMap(result);
+        return Collections.unmodifiableList(result);
     }
 }
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import io.github.iquote.text_processing.analysis.TermExtractionService;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasItem;
@@ -23,4 +24,17 @@ public class TermExtractionServiceTest {
         final List<String> terms = SERVICE.getTerms("шашлык в Риге");
         assertThat(terms, hasItem("шашлык"));
     }
+
+    @Test
+    public void testGetTermsWithoutLanguageFeatures() throws Exception {
+        final List<String> terms = SERVICE.getTerms("12345 67890");
+        assertThat(terms, hasItem("12345"));
+    }
+
+    @Test
+    public void testGetTermsForLanguageSubset() throws Exception {
+        final TermExtractionService service = new TermExtractionService(true, Arrays.asList("lav", "rus"));
+        final List<String> terms = service.getTerms("šašliks rīgā");
+        assertThat(terms, hasItem("šašlik"));
+    }
 }
\ No newline at end of file